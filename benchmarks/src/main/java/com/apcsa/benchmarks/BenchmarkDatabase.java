@@ -0,0 +1,52 @@
+package com.apcsa.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/*
+ * Samples the rows the benchmarks operate on from a generated database.
+ */
+
+final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    /*
+     * Retrieves a random sample of the rows returned by a query, one String per column.
+     *
+     * @param url the JDBC url of the database
+     * @param sql the query
+     * @param size the maximum number of rows
+     * @return the sampled rows
+     */
+
+    static ArrayList<String[]> sample(String url, String sql, int size) throws SQLException {
+        ArrayList<String[]> rows = new ArrayList<String[]>();
+
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM (" + sql + ") ORDER BY random() LIMIT ?")) {
+
+            stmt.setInt(1, size);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+
+                while (rs.next()) {
+                    String[] row = new String[columns];
+
+                    for (int i = 0; i < columns; i++) {
+                        row[i] = rs.getString(i + 1);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+
+        return rows;
+    }
+}
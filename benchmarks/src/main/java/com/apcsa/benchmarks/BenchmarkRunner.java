@@ -0,0 +1,88 @@
+package com.apcsa.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the PowerSchool benchmarks with the GC profiler, so allocation per operation is
+ * reported next to throughput and average latency. Any JMH command line option can be
+ * passed through. The benchmark database is sized with system properties, which are
+ * forwarded to the forked benchmark JVMs:
+ *
+ *     powerschool.db                                   the database file (target/benchmark.db)
+ *     powerschool.setupScript                          the setup script (config/setup.sql)
+ *     powerschool.generate.students                    students (5000)
+ *     powerschool.generate.teachers                    teachers (40)
+ *     powerschool.generate.courses                     courses (200)
+ *     powerschool.generate.coursesPerStudent           courses per student (6)
+ *     powerschool.generate.assignmentsPerMarkingPeriod assignments per course and marking period (10)
+ *     powerschool.generate.seed                        the random seed (42)
+ *
+ * e.g. java -Dpowerschool.generate.students=50000 -Dpowerschool.generate.courses=2000
+ *           -jar target/benchmarks.jar -f 1
+ */
+
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+
+        if (System.getProperty("powerschool.db") == null) {
+            System.setProperty("powerschool.db", new File("target/benchmark.db").getAbsolutePath());
+        }
+        if (System.getProperty("powerschool.setupScript") == null) {
+            System.setProperty("powerschool.setupScript", findSetupScript());
+        }
+
+        setDefault("powerschool.generate.students", "5000");
+        setDefault("powerschool.generate.teachers", "40");
+        setDefault("powerschool.generate.courses", "200");
+        setDefault("powerschool.generate.assignmentsPerMarkingPeriod", "10");
+
+        Collection<String> jvmArgs = new ArrayList<String>(cli.getJvmArgsAppend().orElse(new ArrayList<String>()));
+
+        for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+            if (property.getKey().toString().startsWith("powerschool.")) {
+                jvmArgs.add("-D" + property.getKey() + "=" + property.getValue());
+            }
+        }
+
+        Options options = new OptionsBuilder()
+            .parent(cli)
+            .addProfiler(GCProfiler.class)
+            .jvmArgsAppend(jvmArgs.toArray(new String[0]))
+            .build();
+
+        new Runner(options).run();
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /*
+     * Finds config/setup.sql whether the benchmarks are run from the repository root or
+     * from the benchmarks directory.
+     */
+
+    private static String findSetupScript() {
+        for (String path : new String[] { "config/setup.sql", "../config/setup.sql" }) {
+            File script = new File(path);
+
+            if (script.isFile()) {
+                return script.getAbsolutePath();
+            }
+        }
+
+        return "config/setup.sql";
+    }
+}
@@ -0,0 +1,147 @@
+package com.apcsa.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.apcsa.data.DataGenerator;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.data.StudentSession;
+import com.apcsa.model.AssignmentGrade;
+import com.apcsa.model.Student;
+import com.apcsa.model.User;
+
+/*
+ * Benchmarks the hot PowerSchool data access paths against a database generated with the
+ * size given by the powerschool.generate.* system properties (see BenchmarkRunner).
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PowerSchoolBenchmark {
+
+    private static final int SAMPLE_SIZE = 1000;
+
+    private String[] usernames;
+    private String[] courseNos;
+    private int[] departmentIds;
+    private int[] enrolledStudentIds;
+    private int[] enrolledCourseIds;
+    private int[] gradedCourseIds;
+    private int[] gradedAssignmentIds;
+    private int[] gradedStudentIds;
+    private int[] gradedPointValues;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String database = System.getProperty("powerschool.db");
+        String url = "jdbc:sqlite:" + database;
+
+        new File(database).getAbsoluteFile().getParentFile().mkdirs();
+
+        DataGenerator.fromProperties().generate(database, System.getProperty("powerschool.setupScript"));
+        PowerSchool.initialize(false);
+
+        List<String[]> users = BenchmarkDatabase.sample(url,
+            "SELECT username FROM users WHERE account_type = 'student'", SAMPLE_SIZE);
+        List<String[]> courses = BenchmarkDatabase.sample(url,
+            "SELECT course_no, department_id FROM courses", SAMPLE_SIZE);
+        List<String[]> enrollments = BenchmarkDatabase.sample(url,
+            "SELECT student_id, course_id FROM course_grades", SAMPLE_SIZE);
+        List<String[]> grades = BenchmarkDatabase.sample(url,
+            "SELECT course_id, assignment_id, student_id, points_possible FROM assignment_grades", SAMPLE_SIZE);
+
+        usernames = column(users, 0);
+        courseNos = column(courses, 0);
+        departmentIds = ints(courses, 1);
+        enrolledStudentIds = ints(enrollments, 0);
+        enrolledCourseIds = ints(enrollments, 1);
+        gradedCourseIds = ints(grades, 0);
+        gradedAssignmentIds = ints(grades, 1);
+        gradedStudentIds = ints(grades, 2);
+        gradedPointValues = ints(grades, 3);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PowerSchool.shutdown();
+    }
+
+    @Benchmark
+    public User login() {
+        return PowerSchool.login(usernames[next(usernames.length)], DataGenerator.PASSWORD);
+    }
+
+    @Benchmark
+    public ArrayList<Student> getStudentsByCourse() {
+        return PowerSchool.getStudentsByCourse(courseNos[next(courseNos.length)]);
+    }
+
+    @Benchmark
+    public ArrayList<String> getCourses() {
+        return PowerSchool.getCourses(departmentIds[next(departmentIds.length)]);
+    }
+
+    @Benchmark
+    public ArrayList<AssignmentGrade> getAssignmentGrades() {
+        int i = next(enrolledStudentIds.length);
+
+        return PowerSchool.getAssignmentGrades(enrolledStudentIds[i], enrolledCourseIds[i], 1 + next(4));
+    }
+
+    @Benchmark
+    public StudentSession getStudentSession() {
+        return PowerSchool.getStudentSession(enrolledStudentIds[next(enrolledStudentIds.length)], null);
+    }
+
+    @Benchmark
+    public int saveAssignmentGrade() {
+        int i = next(gradedStudentIds.length);
+
+        return PowerSchool.saveAssignmentGrade(gradedCourseIds[i], gradedAssignmentIds[i], gradedStudentIds[i],
+            next(gradedPointValues[i] + 1), gradedPointValues[i]);
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    private static int next(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    private static String[] column(List<String[]> rows, int column) {
+        String[] values = new String[rows.size()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rows.get(i)[column];
+        }
+
+        return values;
+    }
+
+    private static int[] ints(List<String[]> rows, int column) {
+        int[] values = new int[rows.size()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Integer.parseInt(rows.get(i)[column]);
+        }
+
+        return values;
+    }
+}
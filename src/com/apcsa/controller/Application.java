@@ -1,9 +1,24 @@
 package com.apcsa.controller;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import com.apcsa.data.ActionTrace;
 import com.apcsa.data.PowerSchool;
+import com.apcsa.data.PragmaProfile;
+import com.apcsa.data.QueryMetrics;
+import com.apcsa.data.StudentSession;
+import com.apcsa.model.Assignment;
+import com.apcsa.model.AssignmentGrade;
+import com.apcsa.model.CourseGrade;
+import com.apcsa.model.GradeEntry;
+import com.apcsa.model.RosterEntry;
 import com.apcsa.model.Student;
 import com.apcsa.model.Teacher;
 import com.apcsa.model.User;
@@ -12,23 +27,26 @@ public class Application {
 
     private Scanner in;
     private User activeUser;
+    private StudentSession session;
     
-    enum RootAction { PASSWORD, DATABASE, LOGOUT, SHUTDOWN }
+    enum RootAction { PASSWORD, DATABASE, METRICS, LOGOUT, SHUTDOWN }
     enum AdministratorAction { FACULTY, DEPARTMENT, STUDENTS, GRADE, COURSE, PASSWORD, LOGOUT }
-    enum TeacherAction { ENROLLMENT, ADD, DELETE, GRADE, PASSWORD, LOGOUT }
+    enum TeacherAction { ENROLLMENT, ADD, DELETE, GRADE, BATCH, PASSWORD, LOGOUT }
     enum StudentAction { COURSE, ASSIGNMENT, PASSWORD, LOGOUT }
 
     
     /**
      * Creates an instance of the Application class, which is responsible for interacting with the
      * user via the command line interface.
+     *
+     * @param profile the database pragma profile
      */
 
-    public Application() {
+    public Application(PragmaProfile profile) {
         this.in = new Scanner(System.in);
 
         try {
-            PowerSchool.initialize(false);
+            PowerSchool.initialize(false, profile);
         } catch (Exception e) {
             shutdown(e);
         }
@@ -59,6 +77,11 @@ public class Application {
                         ? PowerSchool.getTeacher(activeUser) : activeUser.isStudent()
                         ? PowerSchool.getStudent(activeUser) : activeUser.isRoot()
                         ? activeUser : null;
+                    
+                    if (activeUser.isStudent()) {
+                        // prefetch the student's courses and grades for the rest of the session
+                        session = PowerSchool.getStudentSession(((Student) activeUser).getStudentId(), null);
+                    }
     
                     if (isFirstLogin() && !activeUser.isRoot()) {
                         // first-time users need to change their passwords from the default provided
@@ -132,12 +155,21 @@ public class Application {
     
     private void showRootUI() {
         while (activeUser != null) {
-            switch (getRootMenuSelection()) {
-                case PASSWORD: resetPassword(); break;
-                case DATABASE: factoryReset(); break;
-                case LOGOUT: logout(); break;
-                case SHUTDOWN: shutdown(); break;
-                default: System.out.println("\nInvalid selection."); break;
+            RootAction action = getRootMenuSelection();
+            
+            ActionTrace trace = ActionTrace.open(action);
+
+            try {
+                switch (action) {
+                    case PASSWORD: resetPassword(); break;
+                    case DATABASE: factoryReset(); break;
+                    case METRICS: viewQueryMetrics(); break;
+                    case LOGOUT: logout(); break;
+                    case SHUTDOWN: shutdown(); break;
+                    default: System.out.println("\nInvalid selection."); break;
+                }
+            } finally {
+                trace.close();
             }
         }
     }
@@ -153,15 +185,17 @@ public class Application {
         
         System.out.println("[1] Reset user password.");
         System.out.println("[2] Factory reset database.");
-        System.out.println("[3] Logout.");
-        System.out.println("[4] Shutdown.");
+        System.out.println("[3] View query metrics.");
+        System.out.println("[4] Logout.");
+        System.out.println("[5] Shutdown.");
         System.out.print("\n::: ");
         
         switch (Utils.getInt(in, -1)) {
             case 1: return RootAction.PASSWORD;
             case 2: return RootAction.DATABASE;
-            case 3: return RootAction.LOGOUT;
-            case 4: return RootAction.SHUTDOWN;
+            case 3: return RootAction.METRICS;
+            case 4: return RootAction.LOGOUT;
+            case 5: return RootAction.SHUTDOWN;
             default: return null;
         }
     }
@@ -221,6 +255,22 @@ public class Application {
     	
     }
     
+    /*
+     * Displays the latency of every PowerSchool method and statement since startup.
+     */
+    
+    private void viewQueryMetrics() {
+        QueryMetrics metrics = PowerSchool.getQueryMetrics();
+        
+        if (!metrics.isEnabled()) {
+            System.out.println("\nQuery metrics are disabled.");
+        }
+        
+        System.out.println();
+        System.out.print(metrics.report());
+        System.out.println("\nConnection pool: " + PowerSchool.getPoolStatistics());
+    }
+    
     /////// ADMINISTRATOR METHODS /////////////////////////////////////////////////////////
     
     /*
@@ -229,15 +279,23 @@ public class Application {
     
     private void showAdministratorUI() {
         while (activeUser != null) {
-            switch (getAdministratorMenuSelection()) {
-                case FACULTY: viewFaculty(); break;
-                case DEPARTMENT: viewFacultyByDepartment(); break;
-                case STUDENTS: viewStudents(); break;
-                case GRADE: viewStudentsByGrade(); break;
-                case COURSE: viewStudentsByCourse(); break;
-                case PASSWORD: changePassword(false); break;
-                case LOGOUT: logout(); break;
-                default: System.out.println("\nInvalid selection."); break;
+            AdministratorAction action = getAdministratorMenuSelection();
+            
+            ActionTrace trace = ActionTrace.open(action);
+
+            try {
+                switch (action) {
+                    case FACULTY: viewFaculty(); break;
+                    case DEPARTMENT: viewFacultyByDepartment(); break;
+                    case STUDENTS: viewStudents(); break;
+                    case GRADE: viewStudentsByGrade(); break;
+                    case COURSE: viewStudentsByCourse(); break;
+                    case PASSWORD: changePassword(false); break;
+                    case LOGOUT: logout(); break;
+                    default: System.out.println("\nInvalid selection."); break;
+                }
+            } finally {
+                trace.close();
             }
         }
     }
@@ -367,7 +425,7 @@ public class Application {
         //      print the list of students by name and class rank
         //
     	
-    	ArrayList<Student> students = Utils.updateRanks(PowerSchool.getStudentsByGrade(getGradeSelection()));
+    	ArrayList<Student> students = PowerSchool.getStudentsByGrade(getGradeSelection());
     	
     	if (students.isEmpty()) {
             System.out.println("\nNo students to display.");
@@ -438,14 +496,23 @@ public class Application {
     
     private void showTeacherUI() {
         while (activeUser != null) {
-            switch (getTeacherMenuSelection()) {
-                case ENROLLMENT: viewEnrollmentByCourse(); break;
-                case ADD: addAssignment(); break;
-                case DELETE: deleteAssignment(); break;
-                case GRADE: enterGrade(); break;
-                case PASSWORD: changePassword(false); break;
-                case LOGOUT: logout(); break;
-                default: System.out.println("\nInvalid selection."); break;
+            TeacherAction action = getTeacherMenuSelection();
+            
+            ActionTrace trace = ActionTrace.open(action);
+
+            try {
+                switch (action) {
+                    case ENROLLMENT: viewEnrollmentByCourse(); break;
+                    case ADD: addAssignment(); break;
+                    case DELETE: deleteAssignment(); break;
+                    case GRADE: enterGrade(); break;
+                    case BATCH: enterCourseGrades(); break;
+                    case PASSWORD: changePassword(false); break;
+                    case LOGOUT: logout(); break;
+                    default: System.out.println("\nInvalid selection."); break;
+                }
+            } finally {
+                trace.close();
             }
         }
     }
@@ -463,8 +530,9 @@ public class Application {
         System.out.println("[2] Add assignment.");
         System.out.println("[3] Delete assignment.");
         System.out.println("[4] Enter grade.");
-        System.out.println("[5] Change password.");
-        System.out.println("[6] Logout.");
+        System.out.println("[5] Enter grades for entire course.");
+        System.out.println("[6] Change password.");
+        System.out.println("[7] Logout.");
         System.out.print("\n::: ");
         
         switch (Utils.getInt(in, -1)) {
@@ -472,8 +540,9 @@ public class Application {
             case 2: return TeacherAction.ADD;
             case 3: return TeacherAction.DELETE;
             case 4: return TeacherAction.GRADE;
-            case 5: return TeacherAction.PASSWORD;
-            case 6: return TeacherAction.LOGOUT;
+            case 5: return TeacherAction.BATCH;
+            case 6: return TeacherAction.PASSWORD;
+            case 7: return TeacherAction.LOGOUT;
         }
         
         return null;
@@ -527,7 +596,7 @@ public class Application {
     	}
     	
     	String courseNo = courses.get(courseSelection-1);
-    	int courseId = PowerSchool.getCourseIdFromCourseNo(courseNo);
+    	int courseId = PowerSchool.getCourseCatalog().getCourseId(courseNo);
     	
     	printMarkingPeriods();
     	int markingPeriod = in.nextInt();
@@ -580,38 +649,21 @@ public class Application {
 			
     	} else if (checked == 1) {
     		
-    		int rows = PowerSchool.assignmentRows();
-    		if(rows == 0) {
-    			
-    			assignmentId = 1;
-    			
+    		assignmentId = PowerSchool.nextAssignmentId();
+    		
+    		if (assignmentId != -1 && PowerSchool.addAssignment(courseId, assignmentId, markingPeriod, isMidterm, isFinal, title, pointValue) == 1) {
+    			System.out.println("\nSuccessfully created assignment.\n");
     		} else {
-    			
-    			ArrayList<String> assignmentIds = PowerSchool.acquireAssignmentIds();
-    			String lastAssignmentId = assignmentIds.get(assignmentIds.size() - 1);
-    			assignmentId = Integer.parseInt(lastAssignmentId) + 1;
+    			System.out.println("\nError creating assignment.\n");
     		}
-    		
-    		PowerSchool.addAssignment(courseId, assignmentId, markingPeriod, isMidterm, isFinal, title, pointValue);
-
-    		
-    		System.out.println("\nSuccessfully created assignment.\n");
     	}
     }
 
 	private int getCourseId() {
 		String courseNumber = getCourseSelectionTeacher();
-		return PowerSchool.getCourseId(courseNumber);
+		return PowerSchool.getCourseCatalog().getCourseId(courseNumber);
 	} 
 
-//	private int getAssignmentId() {		
-//		if (PowerSchool.getNumberOfAssignemnts() == 0) {
-//			return 1;
-//		} else {
-//			return PowerSchool.getlastAssignmentId() + 1;
-//		}
-//	}
-    
 	private void deleteAssignment() {
 		int courseId = getCourseId();
 		System.out.println("\nChoose a marking period or exam status.\n");
@@ -637,16 +689,15 @@ public class Application {
             System.out.print("\n::: ");
             markingPeriod = Utils.getInt(in, -1);                 
         }
-		 ArrayList<String> assignments = PowerSchool.getAssignments(courseId, markingPeriod);
-		 ArrayList<String> pointValues = PowerSchool.getPointValues(courseId, markingPeriod);
+		 List<Assignment> assignments = PowerSchool.getAssignments(courseId, markingPeriod);
 		 
 		 System.out.println();
 		 if(!assignments.isEmpty()) {
 			 int assignmentSelection = -1;
 		        while(assignmentSelection <= 0 || assignmentSelection > assignments.size()) {
 		       	 int j = 1;
-		            for (String i: assignments) {
-		                System.out.println("["+ j++ + "] " + i + " (" + pointValues.get(j-2) + " pts)");
+		            for (Assignment i: assignments) {
+		                System.out.println("["+ j++ + "] " + i.getTitle() + " (" + i.getPointValue() + " pts)");
 		            }
 		       	 System.out.print("\n::: ");
 		       	assignmentSelection = Utils.getInt(in, -1);
@@ -654,8 +705,8 @@ public class Application {
 		       		 System.out.println("\nInvalid Selection.\n");
 		       	 }
 		        }
-		        String title = assignments.get(assignmentSelection-1);
-		        int assignemntId = PowerSchool.getAssignmentId(courseId, markingPeriod, title);
+		        String title = assignments.get(assignmentSelection-1).getTitle();
+		        int assignemntId = assignments.get(assignmentSelection-1).getAssignmentId();
 		        if(Utils.confirm(in, "\nAre you sure you want to create this assignment? (y/n) ")) {
 		        	if(PowerSchool.deleteAssignment(courseId, markingPeriod, title) == 1 && PowerSchool.deleteAssignmentGrades(assignemntId, courseId) ==1 ) {
 		        		System.out.println("\nSuccessfully deleted " + title + ".");		        		
@@ -692,7 +743,7 @@ public class Application {
        		}
        	}
         String courseNo = courses.get(courseSelection-1); 
-       	int courseId = PowerSchool.getCourseIdFromCourseNo(courseNo); //courseId
+       	int courseId = PowerSchool.getCourseCatalog().getCourseId(courseNo); //courseId
        	printMarkingPeriods();
        	int markingPeriod = in.nextInt();//Selected Marking Period
        	if(markingPeriod < 1 || markingPeriod > 6) {
@@ -703,7 +754,7 @@ public class Application {
        		}
        	}
         	
-       	ArrayList<String> assignments = PowerSchool.getAssignments(courseId, markingPeriod);//get courses by courseId and markingPeriod
+       	List<Assignment> assignments = PowerSchool.getAssignments(courseId, markingPeriod);//get assignments by courseId and markingPeriod
        	if(assignments.isEmpty()) {
        		System.out.println("\nThere are no assignments here.\n");
        		hasAssignment = false;
@@ -711,7 +762,7 @@ public class Application {
         while(hasAssignment) {
         	System.out.println("\nChoose an assignment.\n");
         	for(int i = 0; i <= assignments.size()-1; i++) {
-        		System.out.println("[" + (i + 1) + "] " + assignments.get(i) + " (" + PowerSchool.getPointValue(assignments.get(i)) + " pts)");
+        		System.out.println("[" + (i + 1) + "] " + assignments.get(i).getTitle() + " (" + assignments.get(i).getPointValue() + " pts)");
         	}
         	System.out.print("\n::: ");
         	int assignmentSelection = in.nextInt();
@@ -720,67 +771,53 @@ public class Application {
         			System.out.println("\nInvlaid selection.");
         			System.out.println("\nChoose an assignment.\n");
                 	for(int i = 0; i <= assignments.size()-1; i++) {
-                		System.out.println("[" + (i + 1) + "] " + assignments.get(i) + " (" + PowerSchool.getPointValue(assignments.get(i)) + " pts)");
+                		System.out.println("[" + (i + 1) + "] " + assignments.get(i).getTitle() + " (" + assignments.get(i).getPointValue() + " pts)");
                 	}
                 	System.out.print("\n::: ");
                 	assignmentSelection = in.nextInt();
         		}
         	}
-        	String title = assignments.get(assignmentSelection-1); //title of the assignment
+        	Assignment assignment = assignments.get(assignmentSelection-1);
+        	String title = assignment.getTitle(); //title of the assignment
+        	int pointValue = assignment.getPointValue();
         	
-        	String StringCourseId = PowerSchool.getCourseIdFromCourseNo2(courseNo);//courseId
-        	ArrayList<String> studentIds = PowerSchool.getStudentId(StringCourseId);//getting studentIds enrolled in a course with courseId
-        	ArrayList<String> students = new ArrayList<String>();
-        	for(int i = 0; i < studentIds.size(); i++) {
-        		students.addAll(PowerSchool.getStudentsByStudentId(studentIds.get(i))); //getting students firstname, lastname, and gpa
-        	}
-        	ArrayList<String> studentsFirstNames = new ArrayList<String>();
-        	for(int i = 0; i < studentIds.size(); i++) {
-        		studentsFirstNames.addAll(PowerSchool.getStudentsFirstNames(studentIds.get(i)));
-        	}
-        	ArrayList<String> studentLastNames = new ArrayList<String>();
-        	for(int i = 0; i < studentIds.size(); i++) {
-        		studentLastNames.addAll(PowerSchool.getStudentsLastNames(studentIds.get(i)));
+        	int assignmentId = assignment.getAssignmentId();
+        	ArrayList<RosterEntry> roster = PowerSchool.getCourseRoster(courseId, assignmentId); //students enrolled in the course with their current grades
+        	if(roster.isEmpty()) {
+        		System.out.println("\nNo students to display.\n");
+        		hasAssignment = false;
+        		continue;
         	}
         	System.out.println("\nChoose a student.\n");
-        	for(int i = 0, x = 1; i < students.size(); i = i + 3) {
-        		System.out.println("[" + (x) + "] " + students.get(i+1) + ", " + students.get(i));
-        		x++;
+        	for(int i = 0; i < roster.size(); i++) {
+        		System.out.println("[" + (i + 1) + "] " + roster.get(i).getName());
         	}
         	System.out.print("\n::: ");
         	int studentSelection = in.nextInt();
-        	if(studentSelection < 1 || studentSelection > students.size()/3) {
-        		while(studentSelection < 1 || studentSelection > students.size()/3) {
+        	if(studentSelection < 1 || studentSelection > roster.size()) {
+        		while(studentSelection < 1 || studentSelection > roster.size()) {
         			System.out.println("\nInvalid selection.");
         			System.out.println("\nChoose a student.\n");
-                	for(int i = 0, x = 1; i < students.size(); i = i + 3) {
-                		System.out.println("[" + (x) + "] " + students.get(i+1) + ", " + students.get(i));
-                		x++;
+                	for(int i = 0; i < roster.size(); i++) {
+                		System.out.println("[" + (i + 1) + "] " + roster.get(i).getName());
                 	}
                 	System.out.print("\n::: ");
                 	studentSelection = in.nextInt();
         		}
         	}
-        	String studentLastName = studentLastNames.get(studentSelection-1);
-        	String studentFirstName = studentsFirstNames.get(studentSelection-1);
-        	int rows = PowerSchool.assignmentGradesRows();
-        	System.out.println("\nAssignment: " + title + " (" + PowerSchool.getPointValue(title) + " pts)");
-        	System.out.println("Student: " + studentLastName + ", " + studentFirstName);
-        	int assignmentId = PowerSchool.getAssignmentIdFromTitlePlus(title, courseId, markingPeriod);
-        	int studentId = Integer.parseInt(studentIds.get(studentSelection-1));
-        	if(rows == 0) {
+        	RosterEntry student = roster.get(studentSelection-1);
+        	System.out.println("\nAssignment: " + title + " (" + pointValue + " pts)");
+        	System.out.println("Student: " + student.getName());
+        	int studentId = student.getStudentId();
+        	if(student.getPointsEarned() == -1) {
         		System.out.println("Current Grade: --");
         	} else {
-        		if(PowerSchool.previousGrade(courseId, assignmentId, studentId) == -1) {
-        			System.out.println("Current Grade: --");
-        		} else {
-        			System.out.println("Current Grade: " + PowerSchool.previousGrade(courseId, assignmentId, studentId));
-        		}
+        		System.out.println("Current Grade: " + student.getPointsEarned());
         	}
         	System.out.print("\nNew Grade: ");
         	double pointsEarned = in.nextDouble();
-        	if(pointsEarned < 0 || pointsEarned > PowerSchool.getPointValue(title)) {
-        		while(pointsEarned < 0 || pointsEarned > PowerSchool.getPointValue(title)) {
+        	if(pointsEarned < 0 || pointsEarned > pointValue) {
+        		while(pointsEarned < 0 || pointsEarned > pointValue) {
         			System.out.print("\nChoose a grade between 0 and the possible number of points.\n\nNew Grade: ");
                 	pointsEarned = in.nextDouble();
         		}
@@ -795,121 +832,122 @@ public class Application {
         	if(checked == -1) {
     			System.out.println("");
         	} else if (checked == 1) {
-
-        			PowerSchool.addAssignmentGrade(courseId, assignmentId, studentId, pointsEarned, PowerSchool.getPointValue(title));
-            		System.out.println("\nSuccesfully entered grade.\n");
-
-        		ArrayList<Integer> assignmentIds = PowerSchool.getAssignmentIdByMP(markingPeriod);
-        		ArrayList<Double> grades = new ArrayList<Double>();
-        		
-        		for(int i = 0; i < assignmentIds.size(); i++) {
-        			grades.addAll(PowerSchool.getGrades(courseId, assignmentIds.get(i),studentId));
-        		}
-        		ArrayList<Double> percent = new ArrayList<Double>();
-        		for(int i = 0; i < grades.size(); i+=2) {
-        			percent.add((grades.get(i)/grades.get(i+1))*100);
-        		}
-        		double total = 0;
-        		for(int i = 0; i < percent.size(); i++) {
-        			total += percent.get(i);
-        		}
-        		double average = total/percent.size();      		
-        		switch (markingPeriod) {
-                case 1: PowerSchool.updateCourseGradesMP1(courseId, studentId, average); break;
-                case 2: PowerSchool.updateCourseGradesMP2(courseId, studentId, average); break;
-                case 3: PowerSchool.updateCourseGradesMP3(courseId, studentId, average); break;
-                case 4: PowerSchool.updateCourseGradesMP4(courseId, studentId, average); break;
-                case 5: PowerSchool.updateCourseGradesMidterm(courseId, studentId, average); break;
-                case 6: PowerSchool.updateCourseGradesFinal(courseId, studentId, average); break;
-                default: System.out.println("\nInvalid selection.\n"); break;
-            	}
-        	}
-        	ArrayList<Double> grades = new ArrayList<Double>();
-        	if(PowerSchool.getMP1Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP1Grade(courseId, studentId));
-        	}
-        	if(PowerSchool.getMP2Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP2Grade(courseId, studentId));
-        	}
-        	if(PowerSchool.getMP3Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP3Grade(courseId, studentId));
-        	}
-        	if(PowerSchool.getMP4Grade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMP4Grade(courseId, studentId));
-        	}
-        	if(PowerSchool.getMidtermGrade(courseId, studentId) == null){
-        		grades.add(-1.0);
-        	} else {
-        		grades.add((Double) PowerSchool.getMidtermGrade(courseId, studentId));
-        	}
-
-        	double grade = Utils.getGrade(grades);
-        	PowerSchool.updateCourseGrade(courseId, studentId, grade);
-        	PowerSchool.getCourseGrades(studentId);
-        	
-        	ArrayList<Object> courseGrades = PowerSchool.getCourseGrades(studentId);
-        	ArrayList<Double> fourScale = new ArrayList<Double>();
-        	for(int i = 0; i < courseGrades.size(); i++) {
-        		if((Double) courseGrades.get(i) == -1.0) {
-        			
-        		} else if ((Double) courseGrades.get(i) >= 93 && (Double) courseGrades.get(i) <= 100) {
-        			fourScale.add(4.0);
-        		} else if ((Double) courseGrades.get(i) >= 90 && (Double) courseGrades.get(i) <= 92) {
-        			fourScale.add(3.7);
-        		} else if ((Double) courseGrades.get(i) >= 87 && (Double) courseGrades.get(i) <= 89) {
-        			fourScale.add(3.3);
-        		} else if ((Double) courseGrades.get(i) >= 83 && (Double) courseGrades.get(i) <= 86) {
-        			fourScale.add(3.0);
-        		} else if ((Double) courseGrades.get(i) >= 80 && (Double) courseGrades.get(i) <= 82) {
-        			fourScale.add(2.7);
-        		} else if ((Double) courseGrades.get(i) >= 77 && (Double) courseGrades.get(i) <= 79) {
-        			fourScale.add(2.3);
-        		} else if ((Double) courseGrades.get(i) >= 73 && (Double) courseGrades.get(i) <= 76) {
-        			fourScale.add(2.0);
-        		} else if ((Double) courseGrades.get(i) >= 70 && (Double) courseGrades.get(i) <= 72) {
-        			fourScale.add(1.7);
-        		} else if ((Double) courseGrades.get(i) >= 67 && (Double) courseGrades.get(i) <= 69) {
-        			fourScale.add(1.3);
-        		} else if ((Double) courseGrades.get(i) >= 65 && (Double) courseGrades.get(i) <= 66) {
-        			fourScale.add(1.0);
-        		} else if ((Double) courseGrades.get(i) > 65) {
-        			fourScale.add(0.0);
+        		int saved = PowerSchool.saveAssignmentGrade(courseId, assignmentId, studentId, pointsEarned, pointValue);
+        		if(saved == -1) {
+        			System.out.println("\nError entering grade.\n");
+        		} else {
+        			System.out.println("\nSuccesfully entered grade.\n");
         		}
         	}
-        	ArrayList<Integer> courseIds = PowerSchool.getCourseIdWithStudentId(studentId);
-        	ArrayList<Integer> creditHours = PowerSchool.getCreditHours(courseIds);
-        	int totalGradePoints = 0;
-        	int hours = 0;
-        	for(int i = 0; i < fourScale.size(); i++) {
-        		totalGradePoints += fourScale.get(i)*creditHours.get(i);
-        		hours += creditHours.get(i);
-        	}
-        	double gpa = (double) (totalGradePoints)/ (double) hours;
-        	double roundedGpa = Math.round(gpa * 100.0) / 100.0;
-        	PowerSchool.updateGPA(roundedGpa, studentId);
         	hasAssignment = false;
     	}
     }
     
+    /*
+     * Enters grades on one assignment for every student in a course, saving them all at once.
+     */
+    
+    private void enterCourseGrades() {
+    	int courseId = getCourseId();
+    	
+    	printMarkingPeriods();
+    	int markingPeriod = Utils.getInt(in, -1);
+    	while (markingPeriod <= 0 || markingPeriod > 6) {
+    		System.out.println("\nInvalid selection.");
+    		printMarkingPeriods();
+    		markingPeriod = Utils.getInt(in, -1);
+    	}
+    	
+    	List<Assignment> assignments = PowerSchool.getAssignments(courseId, markingPeriod);
+    	if (assignments.isEmpty()) {
+    		System.out.println("\nThere are no assignments here.");
+    		return;
+    	}
+    	
+    	int assignmentSelection = -1;
+    	while (assignmentSelection <= 0 || assignmentSelection > assignments.size()) {
+    		System.out.println("\nChoose an assignment.\n");
+    		for (int i = 0; i < assignments.size(); i++) {
+    			System.out.println("[" + (i + 1) + "] " + assignments.get(i).getTitle() + " (" + assignments.get(i).getPointValue() + " pts)");
+    		}
+    		System.out.print("\n::: ");
+    		assignmentSelection = Utils.getInt(in, -1);
+    		if (assignmentSelection <= 0 || assignmentSelection > assignments.size()) {
+    			System.out.println("\nInvalid selection.");
+    		}
+    	}
+    	
+    	Assignment assignment = assignments.get(assignmentSelection - 1);
+    	String title = assignment.getTitle();
+    	int pointValue = assignment.getPointValue();
+    	int assignmentId = assignment.getAssignmentId();
+    	ArrayList<RosterEntry> roster = PowerSchool.getCourseRoster(courseId, assignmentId);
+    	if (roster.isEmpty()) {
+    		System.out.println("\nNo students to display.");
+    		return;
+    	}
+    	
+    	System.out.println("\nAssignment: " + title + " (" + pointValue + " pts)");
+    	System.out.println("Leave a grade blank to skip the student.\n");
+    	
+    	ArrayList<GradeEntry> grades = new ArrayList<GradeEntry>();
+    	for (RosterEntry student : roster) {
+    		String current = student.getPointsEarned() == -1 ? "--" : String.valueOf(student.getPointsEarned());
+    		double pointsEarned = -1;
+    		
+    		while (pointsEarned == -1) {
+    			System.out.print(student.getName() + " [" + current + "]: ");
+    			String input = in.nextLine().trim();
+    			if (input.isEmpty()) {
+    				break;
+    			}
+    			
+    			try {
+    				pointsEarned = Double.parseDouble(input);
+    			} catch (NumberFormatException e) {
+    				pointsEarned = -1;
+    			}
+    			if (!(pointsEarned >= 0 && pointsEarned <= pointValue)) {     // also rejects NaN
+    				System.out.println("Choose a grade between 0 and the possible number of points.");
+    				pointsEarned = -1;
+    			}
+    		}
+    		
+    		if (pointsEarned != -1) {
+    			grades.add(new GradeEntry(student.getStudentId(), pointsEarned));
+    		}
+    	}
+    	
+    	if (grades.isEmpty()) {
+    		System.out.println("\nNo grades entered.");
+    	} else if (Utils.confirm(in, "\nAre you sure you want to enter these " + grades.size() + " grades? (y/n) ")) {
+    		if (PowerSchool.enterAssignmentGrades(courseId, assignmentId, pointValue, grades) == grades.size()) {
+    			System.out.println("\nSuccessfully entered grades.");
+    		} else {
+    			System.out.println("\nError entering grades.");
+    		}
+    	}
+    }
+    
     /////// STUDENT METHODS /////////////////////////////////////////////////////////
 
     
     private void showStudentUI() {
         while (activeUser != null) {
-            switch (getStudentMenuSelection()) {
-                case COURSE: viewCourseGrades(); break;
-                case ASSIGNMENT: viewAssignmentGradesByCourse(); break;
-                case PASSWORD: changePassword(false); break;
-                case LOGOUT: logout(); break;
-                default: System.out.println("\nInvalid selection."); break;
+            StudentAction action = getStudentMenuSelection();
+            
+            ActionTrace trace = ActionTrace.open(action);
+
+            try {
+                switch (action) {
+                    case COURSE: viewCourseGrades(); break;
+                    case ASSIGNMENT: viewAssignmentGradesByCourse(); break;
+                    case PASSWORD: changePassword(false); break;
+                    case LOGOUT: logout(); break;
+                    default: System.out.println("\nInvalid selection."); break;
+                }
+            } finally {
+                trace.close();
             }
         }
     }
@@ -940,25 +978,22 @@ public class Application {
     }
 	
 	public void viewCourseGrades() {
-    	int studentId = PowerSchool.getStudentIdByUserId(activeUser);
-    	ArrayList<Integer> courseIds = PowerSchool.getCourseIdWithStudentId(studentId);
-    	ArrayList<String> courses = PowerSchool.getCourseName(activeUser, courseIds);
-    	ArrayList<String> courseGrades = PowerSchool.getCourseGrade(PowerSchool.getStudentIdByUserId(activeUser), courseIds);
+    	List<CourseGrade> courses = getStudentSession().getCourses();
     	System.out.println("");
     	
-    	for(int i = 0; i <= courseGrades.size()-1; i++) {
-    		System.out.println((i + 1) + ". " + courses.get(i) + " / " + courseGrades.get(i));
+    	for(int i = 0; i <= courses.size()-1; i++) {
+    		System.out.println((i + 1) + ". " + courses.get(i).getTitle() + " / " + courses.get(i).getFormattedGrade());
     	}
     	System.out.println("");
     }
 
 	public void viewAssignmentGradesByCourse() {
     	System.out.println("\nChoose a course.\n");
-    	int studentId = PowerSchool.getStudentIdByUserId(activeUser);
-    	ArrayList<Integer> courseIds = PowerSchool.getCourseIdWithStudentId(studentId);
-    	ArrayList<String> courses = PowerSchool.getCourseNumberWithCourseId(activeUser, courseIds);
+    	StudentSession current = getStudentSession();
+    	int studentId = current.getStudentId();
+    	List<CourseGrade> courses = current.getCourses();
     	for(int i = 0; i <= courses.size()-1; i++) {
-    		System.out.println("[" + (i + 1) + "] " + courses.get(i));
+    		System.out.println("[" + (i + 1) + "] " + courses.get(i).getCourseNo());
     	}
     	System.out.print("\n::: ");
     	int courseSelection = in.nextInt();
@@ -967,13 +1002,13 @@ public class Application {
     			System.out.println("\nInvalid selection.\n");
     			System.out.println("Choose a course.\n");
     			for(int i = 0; i <= courses.size()-1; i++) {
-    	    		System.out.println("[" + (i + 1) + "] " + courses.get(i));
+    	    		System.out.println("[" + (i + 1) + "] " + courses.get(i).getCourseNo());
     	    	}
     	    	System.out.print("\n::: ");
     	    	courseSelection = in.nextInt();
     		}
     	}
-    	int courseId = courseIds.get(courseSelection-1);
+    	int courseId = courses.get(courseSelection-1).getCourseId();
     	printMarkingPeriods();
     	int markingPeriod = in.nextInt();
     	if(markingPeriod < 1 || markingPeriod > 6) {
@@ -984,26 +1019,33 @@ public class Application {
     		}
     	}
     	
-    	ArrayList<String> titles = PowerSchool.getAssignmentTitle(courseId, markingPeriod);
-    	if(titles.isEmpty()) {
+    	ArrayList<AssignmentGrade> grades = PowerSchool.getAssignmentGrades(studentId, courseId, markingPeriod);
+    	if(grades.isEmpty()) {
     		System.out.println("\nThere are no assignments in this class and marking period.\n");
     	} else {
     		
     		System.out.println("");
-    		String currentGrade = "";
-    		for(int i = 0; i <= titles.size()-1; i++) {
-    			int assignmentId = PowerSchool.getAssignmentIdFromTitlePlus(titles.get(i), courseId, markingPeriod);
-    			if(PowerSchool.previousGrade(courseId, assignmentId, studentId) == -1) {
-        			currentGrade = "--";
-        		} else {
-        			currentGrade = String.valueOf(PowerSchool.previousGrade(courseId, assignmentId, studentId));
-        		}
-    			System.out.println((i + 1) + ". " + titles.get(i) + " / " + currentGrade + " (out of " + PowerSchool.getPointValue(titles.get(i)) + " pts)");
+    		for(int i = 0; i <= grades.size()-1; i++) {
+    			AssignmentGrade grade = grades.get(i);
+    			String currentGrade = grade.getPointsEarned() == -1 ? "--" : String.valueOf(grade.getPointsEarned());
+    			System.out.println((i + 1) + ". " + grade.getTitle() + " / " + currentGrade + " (out of " + grade.getPointsPossible() + " pts)");
         	}
         	System.out.println("");
     	}
     }
     
+    /*
+     * Retrieves the logged-in student's session, reloading it if a grade has changed.
+     * 
+     * @return the student's session
+     */
+    
+    private StudentSession getStudentSession() {
+    	session = PowerSchool.getStudentSession(((Student) activeUser).getStudentId(), session);
+    	
+    	return session;
+    }
+    
     /////// SECONDARY MENUS ///////////////////////////////////////////////////////////////
     
     /*
@@ -1068,7 +1110,7 @@ public class Application {
             System.out.print("\nCourse No.: ");
             courseNo = in.next();
             
-            if (validateCourse(courseNo)) {
+            if (PowerSchool.getCourseCatalog().contains(courseNo)) {
                 valid = true;
             } else {
                 System.out.println("\nCourse not found.");
@@ -1078,16 +1120,6 @@ public class Application {
         return courseNo;
     }
     
-    private boolean validateCourse(String courseId) {
-    	boolean isValid = false;
-		for(int i=1; i <  PowerSchool.getNumberOfCourses(); i++) {
-			if(PowerSchool.getCourseNumber(i).equals(courseId)) {
-				isValid = true;
-			}
-		}
-		return isValid;
-	}
-    
     private String getCourseSelectionTeacher() {
     	Teacher teacher = PowerSchool.getTeacher(activeUser);
 		ArrayList<String> courses = PowerSchool.getCourses(teacher.getDepartmentId());
@@ -1194,6 +1226,7 @@ public class Application {
         if (Utils.confirm(in, "Are you sure? (y/n) ")) {
     		
         	activeUser = null;
+        	session = null;
             
         }
     }
@@ -1211,6 +1244,8 @@ public class Application {
             in.close();
         }
         
+        PowerSchool.shutdown();
+
         System.out.println("Encountered unrecoverable error. Shutting down...\n");
         System.out.println(e.getMessage());
                 
@@ -1229,6 +1264,7 @@ public class Application {
             if (in != null) {
                 in.close();
             }
+            PowerSchool.shutdown();
             
             System.out.println("\nGoodbye!");
             System.exit(0);
@@ -1238,15 +1274,73 @@ public class Application {
     /////// MAIN METHOD ///////////////////////////////////////////////////////////////////
 
     /*
-     * Starts the PowerSchool application.
+     * Starts the PowerSchool application. With --script, the commands in the script (or on
+     * standard input, given -) are run without the menus; see ScriptRunner.
      *
-     * @param args unused command line argument list
+     * @param args optional database profile (durable or fast), and optional --script <file | ->
      */
 
     public static void main(String[] args) {
-        Application app = new Application();
+        String profileName = System.getProperty("powerschool.profile", "fast");
+        String script = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--script")) {
+                if (i + 1 == args.length) {
+                    System.err.println("Error: --script requires a file name, or - for standard input.");
+                    System.exit(1);
+
+                    return;
+                }
+                script = args[++i];
+            } else {
+                profileName = args[i];
+            }
+        }
+
+        PragmaProfile profile;
+
+        try {
+            profile = PragmaProfile.fromName(profileName);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+
+            return;
+        }
+
+        if (script != null) {
+            System.exit(runScript(script, profile) == 0 ? 0 : 1);
+        }
+
+        Application app = new Application(profile);
 
         app.startup();
         
     }
+
+    /*
+     * Runs a command script against the database.
+     *
+     * @param script the script file, or - for standard input
+     * @param profile the database pragma profile
+     * @return the number of failed commands; -1 if the script could not be run
+     */
+
+    private static int runScript(String script, PragmaProfile profile) {
+        try (Reader reader = script.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8)) {
+
+            PowerSchool.initialize(false, profile);
+
+            return new ScriptRunner(reader, System.out).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            return -1;
+        } finally {
+            PowerSchool.shutdown();
+        }
+    }
 }
\ No newline at end of file
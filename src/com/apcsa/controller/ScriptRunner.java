@@ -0,0 +1,454 @@
+package com.apcsa.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.apcsa.data.ActionTrace;
+import com.apcsa.data.PowerSchool;
+import com.apcsa.data.WriteBatch;
+import com.apcsa.model.Assignment;
+import com.apcsa.model.Course;
+import com.apcsa.model.Student;
+import com.apcsa.model.Teacher;
+import com.apcsa.model.User;
+import com.apcsa.util.IntIntMap;
+
+/**
+ * Runs PowerSchool commands from a script instead of the interactive menus. One command per
+ * line; blank lines separate blocks, # starts a comment, and arguments containing spaces are
+ * quoted.
+ *
+ *     login <username> <password>
+ *     logout
+ *     add-assignment <course no> <marking period> <point value> <title>
+ *     enter-grade <course no> <assignment title | #assignment id> <student id> <points earned>
+ *     reset-password <username>
+ *     commit
+ *
+ * Changes are checked as they are read; a command that fails its checks is reported and
+ * skipped, and the rest are queued. The changes queued in a block are then written with JDBC
+ * batches in a single transaction, so they are applied completely or not at all. A block
+ * ends at a blank line, a commit, a login or logout, or the end of the script. Commands are
+ * subject to the same rules as the menus: teachers manage the courses of their department,
+ * and only root resets passwords.
+ *
+ * e.g. login rwilson rwilson
+ *      add-assignment CS4000 1 10 "Quiz 3"
+ *      enter-grade CS4000 "Quiz 3" 12 9.5
+ */
+
+class ScriptRunner {
+
+    private final BufferedReader script;
+    private final PrintStream out;
+    private final WriteBatch batch = new WriteBatch();
+    private final List<Target> queuedAssignments = new ArrayList<Target>();
+    private final Map<Integer, IntIntMap> enrollments = new HashMap<Integer, IntIntMap>();
+    private final Map<String, Timing> timings = new LinkedHashMap<String, Timing>();
+
+    private User activeUser;
+    private int line;
+    private int blockStart;
+    private int blocks;
+    private int commands;
+    private int failures;
+
+    /**
+     * Creates an instance of the ScriptRunner class.
+     *
+     * @param script the command script
+     * @param out where results and timings are reported
+     */
+
+    ScriptRunner(Reader script, PrintStream out) {
+        this.script = new BufferedReader(script);
+        this.out = out;
+    }
+
+    /**
+     * Runs every command in the script and reports the time each one took.
+     *
+     * @return the number of commands that failed, including those in rolled back blocks
+     * @throws IOException if the script cannot be read
+     */
+
+    int run() throws IOException {
+        long started = System.nanoTime();
+        String text;
+
+        while ((text = script.readLine()) != null) {
+            line++;
+            text = text.trim();
+
+            if (text.isEmpty()) {
+                flush();
+            } else if (!text.startsWith("#")) {
+                execute(text);
+            }
+        }
+        flush();
+
+        out.println();
+        out.printf("%-16s %8s %12s %12s%n", "Command", "Count", "Total (ms)", "Mean (ms)");
+
+        for (Map.Entry<String, Timing> timing : timings.entrySet()) {
+            Timing t = timing.getValue();
+
+            out.printf("%-16s %8d %12.2f %12.3f%n", timing.getKey(), t.count, t.nanos / 1e6, t.nanos / 1e6 / t.count);
+        }
+
+        out.printf("%n%d commands in %d blocks, %d failed, %.1f ms%n",
+            commands, blocks, failures, (System.nanoTime() - started) / 1e6);
+
+        return failures;
+    }
+
+    /////// COMMANDS //////////////////////////////////////////////////////////////////////
+
+    /*
+     * Parses and runs (or queues) one command, reporting how long it took. A login, logout,
+     * or commit first writes the block it ends; if that block is rolled back, its commands
+     * are counted as failures by flush and the line that ended it is marked.
+     */
+
+    private void execute(String text) {
+        List<String> args = tokenize(text);
+        String command = args.get(0).toLowerCase();
+        boolean endsBlock = command.equals("login") || command.equals("logout") || command.equals("commit");
+        boolean rolledBack = false;
+        String error;
+
+        if (endsBlock) {
+            rolledBack = !flush();
+        } else if (batch.isEmpty()) {
+            blockStart = line;
+        }
+
+        long start = System.nanoTime();
+        ActionTrace trace = ActionTrace.open("Script." + command);
+
+        try {
+            switch (command) {
+                case "login": error = login(args); break;
+                case "logout": error = logout(args); break;
+                case "add-assignment": error = addAssignment(args); break;
+                case "enter-grade": error = enterGrade(args); break;
+                case "reset-password": error = resetPassword(args); break;
+                case "commit": error = args.size() == 1 ? null : usage("commit"); break;
+                default: error = "Unknown command."; break;
+            }
+        } catch (NumberFormatException e) {
+            error = "Expected a number: " + e.getMessage();
+        } finally {
+            trace.close();
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        commands++;
+        record(command, elapsed);
+
+        if (error != null) {
+            failures++;
+        }
+
+        out.printf("[%4d] %-60s %9.3f ms%s%n", line, abbreviate(text), elapsed / 1e6,
+            error != null ? "  FAILED: " + error : rolledBack ? "  (block rolled back)" : "");
+    }
+
+    private String login(List<String> args) {
+        if (args.size() != 3) {
+            return usage("login <username> <password>");
+        }
+
+        User user = PowerSchool.login(args.get(1), args.get(2));
+
+        if (user == null) {
+            activeUser = null;
+
+            return "Invalid username and/or password.";
+        }
+
+        activeUser = user.isTeacher() ? PowerSchool.getTeacher(user) : user;
+
+        return null;
+    }
+
+    private String logout(List<String> args) {
+        if (args.size() != 1) {
+            return usage("logout");
+        }
+
+        activeUser = null;
+
+        return null;
+    }
+
+    private String addAssignment(List<String> args) {
+        if (args.size() != 5) {
+            return usage("add-assignment <course no> <marking period> <point value> <title>");
+        }
+
+        Course course = getCourse(args.get(1));
+        int markingPeriod = Integer.parseInt(args.get(2));
+        int pointValue = Integer.parseInt(args.get(3));
+        String title = args.get(4);
+
+        if (course == null) {
+            return "You do not teach " + args.get(1) + ".";
+        } else if (markingPeriod < 1 || markingPeriod > 6) {
+            return "Marking periods are 1 through 4, or 5 (midterm) and 6 (final).";
+        } else if (pointValue < 1 || pointValue > 100) {
+            return "Point values must be between 1 and 100.";
+        } else if (findAssignment(course.getCourseId(), title) != null) {
+            return "The course already has an assignment named " + title + ".";
+        }
+
+        int assignmentId = batch.addAssignment(course.getCourseId(), markingPeriod, title, pointValue);
+
+        if (assignmentId == -1) {
+            return "Unable to reserve an assignment id.";
+        }
+
+        queuedAssignments.add(new Target(course.getCourseId(), assignmentId, title, pointValue));
+
+        return null;
+    }
+
+    private String enterGrade(List<String> args) {
+        if (args.size() != 5) {
+            return usage("enter-grade <course no> <assignment title | #assignment id> <student id> <points earned>");
+        }
+
+        Course course = getCourse(args.get(1));
+
+        if (course == null) {
+            return "You do not teach " + args.get(1) + ".";
+        }
+
+        Target assignment = findAssignment(course.getCourseId(), args.get(2));
+        int studentId = Integer.parseInt(args.get(3));
+        double pointsEarned = Double.parseDouble(args.get(4));
+
+        if (assignment == null) {
+            return course.getCourseNo() + " has no assignment " + args.get(2) + ".";
+        } else if (!getEnrollment(course).containsKey(studentId)) {
+            return "Student " + studentId + " is not enrolled in " + course.getCourseNo() + ".";
+        } else if (!(pointsEarned >= 0 && pointsEarned <= assignment.pointValue)) {     // also rejects NaN
+            return "Choose a grade between 0 and the possible number of points.";
+        }
+
+        batch.enterGrade(course.getCourseId(), assignment.assignmentId, studentId, pointsEarned, assignment.pointValue);
+
+        return null;
+    }
+
+    private String resetPassword(List<String> args) {
+        if (args.size() != 2) {
+            return usage("reset-password <username>");
+        } else if (activeUser == null || !activeUser.isRoot()) {
+            return "Only root can reset passwords.";
+        }
+
+        batch.resetPassword(args.get(1));
+
+        return null;
+    }
+
+    /*
+     * Writes the queued changes of the current block in one transaction. If the block is
+     * rolled back, each of its queued changes is counted as a failure.
+     *
+     * @return true if the block was written or there was nothing to write; false if it was
+     *         rolled back
+     */
+
+    private boolean flush() {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        int queued = batch.getAssignmentCount() + batch.getGradeCount() + batch.getPasswordResetCount();
+        String summary = batch.getAssignmentCount() + " assignments, " + batch.getGradeCount() + " grades, " +
+            batch.getPasswordResetCount() + " password resets";
+        long start = System.nanoTime();
+        int result;
+        ActionTrace trace = ActionTrace.open("Script.block");
+
+        try {
+            result = PowerSchool.executeBatch(batch);
+        } finally {
+            trace.close();
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        blocks++;
+        record("(block)", elapsed);
+        batch.clear();
+        queuedAssignments.clear();
+
+        if (result != 1) {
+            failures += queued;
+            out.printf("       block (lines %d-%d): %s ROLLED BACK after %.3f ms%n", blockStart, line, summary, elapsed / 1e6);
+
+            return false;
+        }
+
+        out.printf("       block (lines %d-%d): %s committed in %.3f ms%n", blockStart, line, summary, elapsed / 1e6);
+
+        return true;
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Retrieves a course the logged in teacher may manage, or null if there is none.
+     */
+
+    private Course getCourse(String courseNo) {
+        if (activeUser == null || !activeUser.isTeacher()) {
+            return null;
+        }
+
+        Course course = PowerSchool.getCourseCatalog().getCourse(courseNo);
+
+        return course != null && course.getDepartmentId() == ((Teacher) activeUser).getDepartmentId() ? course : null;
+    }
+
+    /*
+     * Finds an assignment of a course by title (or by id, given as #id), including the ones
+     * queued in the current block.
+     */
+
+    private Target findAssignment(int courseId, String reference) {
+        boolean byId = reference.startsWith("#");
+        int assignmentId = byId ? Integer.parseInt(reference.substring(1)) : -1;
+
+        for (Target target : queuedAssignments) {
+            if (target.courseId == courseId &&
+                    (byId ? target.assignmentId == assignmentId : target.title.equals(reference))) {
+                return target;
+            }
+        }
+
+        for (int markingPeriod = 1; markingPeriod <= 6; markingPeriod++) {
+            for (Assignment assignment : PowerSchool.getAssignments(courseId, markingPeriod)) {
+                if (byId ? assignment.getAssignmentId() == assignmentId : assignment.getTitle().equals(reference)) {
+                    return new Target(courseId, assignment.getAssignmentId(), assignment.getTitle(),
+                        assignment.getPointValue());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /*
+     * Retrieves the ids of the students enrolled in a course, loading them once per course.
+     */
+
+    private IntIntMap getEnrollment(Course course) {
+        IntIntMap students = enrollments.get(course.getCourseId());
+
+        if (students == null) {
+            students = new IntIntMap();
+
+            for (Student student : PowerSchool.getStudentsByCourse(course.getCourseNo())) {
+                students.put(student.getStudentId(), 1);
+            }
+            enrollments.put(course.getCourseId(), students);
+        }
+
+        return students;
+    }
+
+    private void record(String command, long nanos) {
+        Timing timing = timings.get(command);
+
+        if (timing == null) {
+            timing = new Timing();
+            timings.put(command, timing);
+        }
+
+        timing.count++;
+        timing.nanos += nanos;
+    }
+
+    private static String usage(String syntax) {
+        return "Usage: " + syntax;
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 60 ? text : text.substring(0, 57) + "...";
+    }
+
+    /*
+     * Splits a command into whitespace separated arguments. Double quotes group an argument
+     * that contains spaces.
+     */
+
+    private static List<String> tokenize(String text) {
+        List<String> args = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean pending = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c == '"') {
+                quoted = !quoted;
+                pending = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (pending) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    pending = false;
+                }
+            } else {
+                current.append(c);
+                pending = true;
+            }
+        }
+
+        if (pending) {
+            args.add(current.toString());
+        }
+
+        return args;
+    }
+
+    /////// TARGETS AND TIMINGS ///////////////////////////////////////////////////////////
+
+    /*
+     * An assignment grades can be entered for, whether it is stored or still queued.
+     */
+
+    private static final class Target {
+
+        private final int courseId;
+        private final int assignmentId;
+        private final String title;
+        private final int pointValue;
+
+        private Target(int courseId, int assignmentId, String title, int pointValue) {
+            this.courseId = courseId;
+            this.assignmentId = assignmentId;
+            this.title = title;
+            this.pointValue = pointValue;
+        }
+    }
+
+    private static final class Timing {
+
+        private int count;
+        private long nanos;
+    }
+}
@@ -0,0 +1,178 @@
+package com.apcsa.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Traces the database work done on behalf of one user action (a menu selection). While a
+ * trace is open on a thread, every connection borrowed and every statement executed on that
+ * thread is counted against it. When the trace is closed, any statement executed more than
+ * powerschool.trace.maxRepeats times (10 by default) is logged and counted in QueryMetrics,
+ * since a statement repeated in a loop can usually be batched or rewritten as one query.
+ *
+ * e.g. try (ActionTrace trace = ActionTrace.open(action)) { ... }
+ */
+
+public final class ActionTrace implements AutoCloseable {
+
+    private static final int MAX_REPEATS = Integer.getInteger("powerschool.trace.maxRepeats", 10);
+    private static final ThreadLocal<ActionTrace> CURRENT = new ThreadLocal<ActionTrace>();
+    private static final Logger LOGGER = Logger.getLogger(ActionTrace.class.getName());
+
+    private final String action;
+    private final ActionTrace outer;
+    private final Map<String, Counter> statements = new HashMap<String, Counter>();
+    private final FlightEvents.Action event = new FlightEvents.Action();
+    private int roundTrips;
+    private int connections;
+
+    private ActionTrace(String action, ActionTrace outer) {
+        this.action = action;
+        this.outer = outer;
+        this.event.begin();
+    }
+
+    /**
+     * Opens a trace for an action on the current thread. Traces nest; closing one restores
+     * the trace that was open before it.
+     *
+     * @param action the action (normally a menu enum constant), or null if it is unknown
+     * @return the open trace
+     */
+
+    public static ActionTrace open(Object action) {
+        String name = action == null ? "(none)"
+            : action instanceof Enum<?> ? action.getClass().getSimpleName() + "." + action : action.toString();
+        ActionTrace trace = new ActionTrace(name, CURRENT.get());
+
+        CURRENT.set(trace);
+
+        return trace;
+    }
+
+    /**
+     * Closes the trace, flagging every statement executed more times than allowed. The
+     * action is reported as a com.apcsa.Action event while a flight recording is running.
+     */
+
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            return;
+        }
+
+        if (outer == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(outer);
+        }
+
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.action = action;
+            event.roundTrips = roundTrips;
+            event.connections = connections;
+            event.commit();
+        }
+
+        for (Map.Entry<String, Counter> statement : statements.entrySet()) {
+            Counter counter = statement.getValue();
+
+            if (counter.executions > MAX_REPEATS) {
+                LOGGER.warning(action + " executed " + statement.getKey() + " " + counter.executions +
+                    " times on " + counter.connections + " connection(s); " + roundTrips + " round trips and " +
+                    connections + " connection(s) in total");
+
+                QueryMetrics.getInstance().flagRepeats(action, statement.getKey(), counter.executions);
+            }
+        }
+    }
+
+    /**
+     * @return the action being traced
+     */
+
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * @return the number of statements executed so far
+     */
+
+    public int getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * @return the number of connections borrowed so far
+     */
+
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * @param statement the statement name
+     * @return the number of times the statement has been executed so far
+     */
+
+    public int getExecutions(String statement) {
+        Counter counter = statements.get(statement);
+
+        return counter == null ? 0 : counter.executions;
+    }
+
+    /////// RECORDING /////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the trace open on the current thread, or null if there is none
+     */
+
+    static ActionTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Counts a borrowed connection.
+     */
+
+    void borrowed() {
+        connections++;
+    }
+
+    /**
+     * Counts a statement execution.
+     *
+     * @param statement the statement name
+     * @param lease the connection lease the statement ran on
+     */
+
+    void executed(String statement, Object lease) {
+        Counter counter = statements.get(statement);
+
+        if (counter == null) {
+            counter = new Counter();
+            statements.put(statement, counter);
+        }
+
+        roundTrips++;
+        counter.executions++;
+
+        if (counter.lease != lease) {
+            counter.lease = lease;
+            counter.connections++;
+        }
+    }
+
+    /////// COUNTER ///////////////////////////////////////////////////////////////////////
+
+    private static final class Counter {
+
+        private int executions;
+        private int connections;
+        private Object lease;          // the lease of the last execution
+    }
+}
@@ -0,0 +1,94 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import com.apcsa.model.Assignment;
+
+class AssignmentCache {
+
+    private final ConcurrentHashMap<Long, List<Assignment>> assignments = new ConcurrentHashMap<Long, List<Assignment>>();
+    private long version;
+
+    /**
+     * Retrieves the assignments of a course in a marking period, loading them with a single
+     * query the first time they are requested.
+     *
+     * @param conn the database connection used on a cache miss
+     * @param courseId the course
+     * @param markingPeriod the marking period (5 and 6 are the midterm and final exams)
+     * @return the assignments, in the order they were created
+     * @throws SQLException
+     */
+
+    List<Assignment> get(Connection conn, int courseId, int markingPeriod) throws SQLException {
+        Long key = key(courseId, markingPeriod);
+        List<Assignment> cached = assignments.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadedAt = getVersion();
+        List<Assignment> loaded = new ArrayList<Assignment>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENTS)) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, markingPeriod);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    loaded.add(new Assignment(rs));
+                }
+            }
+        }
+
+        loaded = Collections.unmodifiableList(loaded);
+
+        // a list loaded while the assignments were being changed may be stale; don't keep it
+
+        synchronized (this) {
+            if (version == loadedAt) {
+                assignments.put(key, loaded);
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Discards the cached assignments of a course in a marking period.
+     *
+     * @param courseId the course
+     * @param markingPeriod the marking period
+     */
+
+    synchronized void invalidate(int courseId, int markingPeriod) {
+        version++;
+        assignments.remove(key(courseId, markingPeriod));
+    }
+
+    /**
+     * Discards every cached assignment.
+     */
+
+    synchronized void clear() {
+        version++;
+        assignments.clear();
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    private synchronized long getVersion() {
+        return version;
+    }
+
+    private static Long key(int courseId, int markingPeriod) {
+        return ((long) courseId << 32) | (markingPeriod & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,491 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPool {
+
+    private final String url;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+    private final int validationTimeout;
+    private final int statementCacheSize;
+    private final Initializer initializer;
+
+    private final Set<PooledConnection> connections = new HashSet<PooledConnection>();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+    private final ScheduledExecutorService evictor;
+
+    private int size;
+    private boolean closed;
+
+    private long borrowCount;
+    private long waitCount;
+    private long timeoutCount;
+    private long createdCount;
+    private long destroyedCount;
+    private long validationFailures;
+    private long retiredCacheHits;
+    private long retiredCacheMisses;
+
+    /**
+     * Creates an instance of the ConnectionPool class, opening its minimum number of
+     * connections up front.
+     *
+     * @param url the JDBC URL of the database
+     * @param minSize the number of connections kept open even when idle
+     * @param maxSize the maximum number of open connections
+     * @param idleTimeout milliseconds an idle connection is kept above the minimum size
+     * @param borrowTimeout milliseconds a caller waits for a connection before failing
+     * @param validationTimeout seconds allowed to validate a connection on borrow
+     * @param statementCacheSize the number of prepared statements cached per connection
+     * @param initializer configures each connection right after it is opened
+     */
+
+    public ConnectionPool(String url, int minSize, int maxSize, long idleTimeout, long borrowTimeout,
+            int validationTimeout, int statementCacheSize, Initializer initializer) {
+
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size (min: " + minSize + ", max: " + maxSize + ").");
+        }
+
+        this.url = url;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeout = idleTimeout;
+        this.borrowTimeout = borrowTimeout;
+        this.validationTimeout = validationTimeout;
+        this.statementCacheSize = statementCacheSize;
+        this.initializer = initializer;
+
+        // evict idle connections in the background so an unused pool shrinks back to its minimum,
+        // and replace connections lost to failed validations or errors so it does not fall below it
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "powerschool-pool-evictor");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long period = Math.max(1000, idleTimeout / 2);
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+
+        fill();
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none are idle and the pool
+     * has not reached its maximum size. Closing the returned connection hands it back to
+     * the pool rather than closing the underlying database connection.
+     *
+     * @return a validated database connection
+     * @throws SQLException if no connection becomes available before the borrow timeout
+     */
+
+    public Connection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeout;
+        boolean waited = false;
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed.");
+                }
+
+                if (!idle.isEmpty()) {
+                    candidate = idle.pollFirst();   // most recently used connection first
+                } else if (size < maxSize) {
+                    size++;                         // reserve a slot before opening outside the lock
+                    create = true;
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+
+                    if (remaining <= 0) {
+                        timeoutCount++;
+                        throw new SQLException("Timed out waiting for a database connection.");
+                    }
+                    if (!waited) {
+                        waitCount++;
+                        waited = true;
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", e);
+                    }
+                    continue;
+                }
+            }
+
+            if (create) {
+                candidate = open();
+            } else if (!candidate.isValid(validationTimeout)) {
+                synchronized (this) {
+                    validationFailures++;
+                }
+                destroy(candidate);
+                continue;
+            }
+
+            synchronized (this) {
+                borrowCount++;
+            }
+
+            return candidate.lease();
+        }
+    }
+
+    /**
+     * Closes every idle connection and rejects further borrows. Connections that are still
+     * borrowed are closed as they are returned.
+     */
+
+    public void close() {
+        ArrayDeque<PooledConnection> closing;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            closing = new ArrayDeque<PooledConnection>(idle);
+            idle.clear();
+            notifyAll();
+        }
+
+        evictor.shutdownNow();
+
+        for (PooledConnection connection : closing) {
+            destroy(connection);
+        }
+    }
+
+    /**
+     * @return a snapshot of the pool's current statistics
+     */
+
+    public synchronized Statistics getStatistics() {
+        long cacheHits = retiredCacheHits;
+        long cacheMisses = retiredCacheMisses;
+
+        for (PooledConnection connection : connections) {
+            cacheHits += connection.getStatementCache().getHits();
+            cacheMisses += connection.getStatementCache().getMisses();
+        }
+
+        return new Statistics(size, idle.size(), borrowCount, waitCount, timeoutCount,
+            createdCount, destroyedCount, validationFailures, cacheHits, cacheMisses);
+    }
+
+    /////// PACKAGE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Returns a connection to the pool after its logical handle has been closed.
+     *
+     * @param connection the pooled connection
+     */
+
+    void release(PooledConnection connection) {
+        boolean reusable = connection.recycle();
+
+        synchronized (this) {
+            if (reusable && !closed) {
+                connection.touch();
+                idle.addFirst(connection);
+                notifyAll();
+
+                return;
+            }
+        }
+
+        destroy(connection);
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Opens a new physical connection in a slot already reserved by the caller.
+     *
+     * @return the new pooled connection
+     * @throws SQLException
+     */
+
+    private PooledConnection open() throws SQLException {
+        try {
+            Connection physical = DriverManager.getConnection(url);
+
+            try {
+                initializer.initialize(physical);
+            } catch (SQLException e) {
+                physical.close();
+                throw e;
+            }
+
+            PooledConnection connection = new PooledConnection(this, physical, statementCacheSize);
+
+            synchronized (this) {
+                connections.add(connection);
+                createdCount++;
+            }
+
+            return connection;
+        } catch (SQLException e) {
+            synchronized (this) {
+                size--;
+                notifyAll();
+            }
+
+            throw e;
+        }
+    }
+
+    /*
+     * Closes a physical connection and frees its slot.
+     *
+     * @param connection the pooled connection
+     */
+
+    private void destroy(PooledConnection connection) {
+        connection.closePhysical();
+
+        synchronized (this) {
+            if (connections.remove(connection)) {
+                retiredCacheHits += connection.getStatementCache().getHits();
+                retiredCacheMisses += connection.getStatementCache().getMisses();
+            }
+
+            size--;
+            destroyedCount++;
+            notifyAll();
+        }
+    }
+
+    /*
+     * Closes connections that have been idle longer than the idle timeout, never shrinking
+     * the pool below its minimum size.
+     */
+
+    private void evictIdle() {
+        ArrayDeque<PooledConnection> evicted = new ArrayDeque<PooledConnection>();
+        long cutoff = System.currentTimeMillis() - idleTimeout;
+
+        synchronized (this) {
+            Iterator<PooledConnection> iterator = idle.descendingIterator();   // least recently used first
+
+            while (iterator.hasNext() && size - evicted.size() > minSize) {
+                PooledConnection connection = iterator.next();
+
+                if (connection.getLastUsed() < cutoff) {
+                    iterator.remove();
+                    evicted.add(connection);
+                }
+            }
+        }
+
+        for (PooledConnection connection : evicted) {
+            destroy(connection);
+        }
+
+        fill();
+    }
+
+    /*
+     * Opens idle connections until the pool is back at its minimum size. If one cannot be
+     * opened, the pool is left short until the next eviction pass or borrow.
+     */
+
+    private void fill() {
+        while (true) {
+            synchronized (this) {
+                if (closed || size >= minSize) {
+                    return;
+                }
+
+                size++;                             // reserve a slot before opening outside the lock
+            }
+
+            PooledConnection connection;
+
+            try {
+                connection = open();
+            } catch (SQLException e) {
+                e.printStackTrace();
+
+                return;
+            }
+
+            synchronized (this) {
+                if (!closed) {
+                    connection.touch();
+                    idle.addLast(connection);
+                    notifyAll();
+
+                    continue;
+                }
+            }
+
+            destroy(connection);
+
+            return;
+        }
+    }
+
+    /////// INITIALIZER ///////////////////////////////////////////////////////////////////
+
+    public interface Initializer {
+
+        /**
+         * Configures a newly opened connection before it is first handed out.
+         *
+         * @param conn the database connection
+         * @throws SQLException
+         */
+
+        void initialize(Connection conn) throws SQLException;
+    }
+
+    /////// STATISTICS ////////////////////////////////////////////////////////////////////
+
+    public static class Statistics {
+
+        private final int size;
+        private final int idle;
+        private final long borrowCount;
+        private final long waitCount;
+        private final long timeoutCount;
+        private final long createdCount;
+        private final long destroyedCount;
+        private final long validationFailures;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+
+        private Statistics(int size, int idle, long borrowCount, long waitCount, long timeoutCount,
+                long createdCount, long destroyedCount, long validationFailures,
+                long statementCacheHits, long statementCacheMisses) {
+
+            this.size = size;
+            this.idle = idle;
+            this.borrowCount = borrowCount;
+            this.waitCount = waitCount;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.destroyedCount = destroyedCount;
+            this.validationFailures = validationFailures;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+        }
+
+        /**
+         * @return the number of open connections (borrowed and idle)
+         */
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return the number of idle connections
+         */
+
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * @return the number of borrowed connections
+         */
+
+        public int getActive() {
+            return size - idle;
+        }
+
+        /**
+         * @return the number of successful borrows
+         */
+
+        public long getBorrowCount() {
+            return borrowCount;
+        }
+
+        /**
+         * @return the number of borrows that had to wait for a connection
+         */
+
+        public long getWaitCount() {
+            return waitCount;
+        }
+
+        /**
+         * @return the number of borrows that timed out
+         */
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        /**
+         * @return the number of physical connections opened
+         */
+
+        public long getCreatedCount() {
+            return createdCount;
+        }
+
+        /**
+         * @return the number of physical connections closed
+         */
+
+        public long getDestroyedCount() {
+            return destroyedCount;
+        }
+
+        /**
+         * @return the number of connections that failed validation on borrow
+         */
+
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        /**
+         * @return the number of prepared statements served from a connection's cache
+         */
+
+        public long getStatementCacheHits() {
+            return statementCacheHits;
+        }
+
+        /**
+         * @return the number of prepared statements that had to be compiled
+         */
+
+        public long getStatementCacheMisses() {
+            return statementCacheMisses;
+        }
+
+        @Override
+        public String toString() {
+            return "size=" + size + ", idle=" + idle + ", active=" + getActive() +
+                ", borrowed=" + borrowCount + ", waited=" + waitCount + ", timeouts=" + timeoutCount +
+                ", created=" + createdCount + ", destroyed=" + destroyedCount +
+                ", validationFailures=" + validationFailures +
+                ", statementCacheHits=" + statementCacheHits + ", statementCacheMisses=" + statementCacheMisses;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import com.apcsa.model.Course;
+
+public class CourseCatalog {
+
+    private final HashMap<String, Course> byNumber = new HashMap<String, Course>();
+    private final HashMap<Integer, Course> byId = new HashMap<Integer, Course>();
+    private final HashMap<Integer, List<Course>> byDepartment = new HashMap<Integer, List<Course>>();
+
+    /*
+     * Creates an immutable snapshot of the courses table. Use PowerSchool.getCourseCatalog().
+     */
+
+    private CourseCatalog() {
+    }
+
+    /**
+     * Determines whether a course number exists.
+     *
+     * @param courseNo the course number
+     * @return true if the course exists; false otherwise
+     */
+
+    public boolean contains(String courseNo) {
+        return byNumber.containsKey(courseNo);
+    }
+
+    /**
+     * Retrieves a course by its course number.
+     *
+     * @param courseNo the course number
+     * @return the course, or null if it does not exist
+     */
+
+    public Course getCourse(String courseNo) {
+        return byNumber.get(courseNo);
+    }
+
+    /**
+     * Retrieves a course by its id.
+     *
+     * @param courseId the course id
+     * @return the course, or null if it does not exist
+     */
+
+    public Course getCourse(int courseId) {
+        return byId.get(courseId);
+    }
+
+    /**
+     * Retrieves the id of a course.
+     *
+     * @param courseNo the course number
+     * @return the course id, or -1 if the course does not exist
+     */
+
+    public int getCourseId(String courseNo) {
+        Course course = byNumber.get(courseNo);
+
+        return course == null ? -1 : course.getCourseId();
+    }
+
+    /**
+     * Retrieves the courses offered by a department, ordered by course id.
+     *
+     * @param departmentId the department
+     * @return the department's courses; empty if there are none
+     */
+
+    public List<Course> getCourses(int departmentId) {
+        List<Course> courses = byDepartment.get(departmentId);
+
+        return courses == null ? Collections.<Course>emptyList() : courses;
+    }
+
+    /////// PACKAGE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Creates a catalog without any courses.
+     */
+
+    static CourseCatalog empty() {
+        return new CourseCatalog();
+    }
+
+    /*
+     * Loads every course with a single query.
+     */
+
+    static CourseCatalog load(Connection conn) throws SQLException {
+        CourseCatalog catalog = new CourseCatalog();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ALL_COURSES_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                Course course = new Course(rs);
+                List<Course> department = catalog.byDepartment.get(course.getDepartmentId());
+
+                if (department == null) {
+                    department = new ArrayList<Course>();
+                    catalog.byDepartment.put(course.getDepartmentId(), department);
+                }
+
+                catalog.byNumber.put(course.getCourseNo(), course);
+                catalog.byId.put(course.getCourseId(), course);
+                department.add(course);
+            }
+        }
+
+        for (Integer departmentId : new ArrayList<Integer>(catalog.byDepartment.keySet())) {
+            catalog.byDepartment.put(departmentId, Collections.unmodifiableList(catalog.byDepartment.get(departmentId)));
+        }
+
+        return catalog;
+    }
+}
@@ -0,0 +1,546 @@
+package com.apcsa.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import com.apcsa.controller.Utils;
+import com.apcsa.util.GradeKernel;
+import com.apcsa.util.IntList;
+
+public class DataGenerator {
+
+    public static final String PASSWORD = "password";     // of every generated account
+
+    private static final int BATCH_SIZE = 10000;
+    private static final String LAST_LOGIN = "0000-00-00 00:00:00.000";
+
+    private final int students;
+    private final int teachers;
+    private final int courses;
+    private final int coursesPerStudent;
+    private final int assignmentsPerMarkingPeriod;
+    private final long seed;
+
+    /**
+     * Creates an instance of the DataGenerator class.
+     *
+     * @param students the number of students
+     * @param teachers the number of teachers
+     * @param courses the number of courses
+     * @param coursesPerStudent the number of courses each student is enrolled in
+     * @param assignmentsPerMarkingPeriod the number of assignments per course and marking period
+     * @param seed the random seed; the same parameters and seed generate the same data
+     */
+
+    public DataGenerator(int students, int teachers, int courses, int coursesPerStudent,
+            int assignmentsPerMarkingPeriod, long seed) {
+
+        this.students = Math.max(0, students);
+        this.teachers = Math.max(1, teachers);
+        this.courses = Math.max(1, courses);
+        this.coursesPerStudent = Math.max(0, Math.min(coursesPerStudent, this.courses));
+        this.assignmentsPerMarkingPeriod = Math.max(0, assignmentsPerMarkingPeriod);
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a generator sized by the powerschool.generate.* system properties: students
+     * (50000), teachers (400), courses (2000), coursesPerStudent (6),
+     * assignmentsPerMarkingPeriod (40), and seed (42).
+     *
+     * @return the generator
+     */
+
+    public static DataGenerator fromProperties() {
+        return new DataGenerator(
+            Integer.getInteger("powerschool.generate.students", 50000),
+            Integer.getInteger("powerschool.generate.teachers", 400),
+            Integer.getInteger("powerschool.generate.courses", 2000),
+            Integer.getInteger("powerschool.generate.coursesPerStudent", 6),
+            Integer.getInteger("powerschool.generate.assignmentsPerMarkingPeriod", 40),
+            Long.getLong("powerschool.generate.seed", 42));
+    }
+
+    /**
+     * Builds a database from the setup script and replaces its sample teachers, students,
+     * courses, and grades with generated ones. The root and administrator accounts and the
+     * departments are kept.
+     *
+     * Every row is consistent with what the application would have written: marking period
+     * and exam averages match the assignment grades, course grades, GPAs, and class ranks
+     * match the averages, and course enrollments match the rosters. Rows are written with
+     * batched inserts in a single transaction.
+     *
+     * @param database the database file; it is overwritten
+     * @param setupScript the setup script that creates the schema
+     * @return the number of rows written
+     * @throws IOException if the setup script cannot be read
+     * @throws SQLException if the data cannot be written
+     */
+
+    public long generate(String database, String setupScript) throws IOException, SQLException {
+        Random random = new Random(seed);
+        long rows = 0;
+
+        for (String suffix : new String[] { "", "-wal", "-shm" }) {
+            new File(database + suffix).delete();
+        }
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database);
+             BufferedReader br = new BufferedReader(new FileReader(new File(setupScript)))) {
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = MEMORY");
+                stmt.execute("PRAGMA synchronous = OFF");
+            }
+
+            new SqlScriptLoader(BATCH_SIZE).load(conn, br);
+            conn.setAutoCommit(false);
+
+            try {
+                clearSampleData(conn);
+
+                Ids ids = new Ids(conn);
+                String[] codes = getDepartmentCodes(conn);
+                int[] teacherIds = new int[teachers];
+                int[] courseIds = new int[courses];
+                double[] courseHours = new double[courses];
+                int[] gradeLevels = new int[students];
+                IntList[] rosters = new IntList[courses];
+
+                rows += insertTeachers(conn, ids, codes.length, teacherIds);
+                rows += insertCourses(conn, ids, codes, teacherIds, courseIds, courseHours, random);
+
+                for (int i = 0; i < students; i++) {
+                    gradeLevels[i] = 9 + random.nextInt(4);
+                }
+
+                enroll(rosters, random);
+
+                double[] gradePoints = new double[students];
+                double[] creditHours = new double[students];
+
+                rows += insertGrades(conn, ids, courseIds, courseHours, rosters, gradePoints, creditHours, random);
+                rows += insertStudents(conn, ids, gradeLevels, gradePoints, creditHours);
+
+                new RankEngine(RankEngine.Mode.COMPETITION).rankAll(conn);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+
+            conn.setAutoCommit(true);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Generates a database. The file defaults to the powerschool.db property and the setup
+     * script to powerschool.setupScript; the size is set with the powerschool.generate.*
+     * properties (see fromProperties).
+     *
+     * @param args the database file (optional)
+     */
+
+    public static void main(String[] args) {
+        String database = args.length > 0 ? args[0] : System.getProperty("powerschool.db", "data/powerschool.db");
+        String setupScript = System.getProperty("powerschool.setupScript", "config/setup.sql");
+        DataGenerator generator = fromProperties();
+        long start = System.nanoTime();
+
+        try {
+            long rows = generator.generate(database, setupScript);
+
+            System.out.println("Wrote " + rows + " rows to " + database + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms.");
+        } catch (IOException e) {
+            System.err.println("Error: Unable to read SQL configuration file.");
+            e.printStackTrace();
+        } catch (SQLException e) {
+            System.err.println("Error: Unable to generate data.");
+            e.printStackTrace();
+        }
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Removes the sample rows that are replaced by generated ones.
+     */
+
+    private static void clearSampleData(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM assignment_grades");
+            stmt.executeUpdate("DELETE FROM assignments");
+            stmt.executeUpdate("DELETE FROM course_grades");
+            stmt.executeUpdate("DELETE FROM courses");
+            stmt.executeUpdate("DELETE FROM students");
+            stmt.executeUpdate("DELETE FROM teachers");
+            stmt.executeUpdate("DELETE FROM users WHERE account_type IN ('student', 'teacher')");
+        }
+    }
+
+    /*
+     * Derives a two letter course number prefix from each department's title, e.g. CS for
+     * Computer Science and MA for Mathematics. Index i holds department i + 1.
+     */
+
+    private static String[] getDepartmentCodes(Connection conn) throws SQLException {
+        ArrayList<String> codes = new ArrayList<String>();
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT title FROM departments ORDER BY department_id")) {
+
+            while (rs.next()) {
+                String[] words = rs.getString("title").toUpperCase().split("\\s+");
+
+                codes.add(words.length > 1
+                    ? words[0].substring(0, 1) + words[1].substring(0, 1)
+                    : words[0].substring(0, Math.min(2, words[0].length())));
+            }
+        }
+
+        if (codes.isEmpty()) {
+            throw new SQLException("The setup script does not create any departments.");
+        }
+
+        return codes.toArray(new String[0]);
+    }
+
+    private long insertTeachers(Connection conn, Ids ids, int departments, int[] teacherIds) throws SQLException {
+        try (PreparedStatement user = conn.prepareStatement(
+                 "INSERT INTO users (user_id, account_type, username, auth, last_login) VALUES (?, 'teacher', ?, ?, ?)");
+             PreparedStatement teacher = conn.prepareStatement(
+                 "INSERT INTO teachers (teacher_id, first_name, last_name, department_id, user_id) VALUES (?, ?, ?, ?, ?)")) {
+
+            String auth = Utils.getHash(PASSWORD);
+
+            for (int i = 0; i < teachers; i++) {
+                int userId = ++ids.user;
+
+                teacherIds[i] = ++ids.teacher;
+
+                user.setInt(1, userId);
+                user.setString(2, "teacher" + teacherIds[i]);
+                user.setString(3, auth);
+                user.setString(4, LAST_LOGIN);
+                user.addBatch();
+
+                teacher.setInt(1, teacherIds[i]);
+                teacher.setString(2, "Teacher");
+                teacher.setString(3, String.valueOf(teacherIds[i]));
+                teacher.setInt(4, 1 + i % departments);
+                teacher.setInt(5, userId);
+                teacher.addBatch();
+
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    user.executeBatch();
+                    teacher.executeBatch();
+                }
+            }
+
+            user.executeBatch();
+            teacher.executeBatch();
+        }
+
+        return 2L * teachers;
+    }
+
+    private long insertCourses(Connection conn, Ids ids, String[] codes, int[] teacherIds, int[] courseIds,
+            double[] courseHours, Random random) throws SQLException {
+
+        try (PreparedStatement course = conn.prepareStatement(
+                 "INSERT INTO courses (course_id, department_id, teacher_id, course_no, title, credit_hours, weight, enrollment, capacity) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)")) {
+
+            for (int i = 0; i < courses; i++) {
+                int teacher = i % teachers;
+                int department = teacher % codes.length;
+
+                courseIds[i] = ++ids.course;
+                courseHours[i] = random.nextInt(4) == 0 ? 2.5 : 5.0;
+
+                course.setInt(1, courseIds[i]);
+                course.setInt(2, department + 1);
+                course.setInt(3, teacherIds[teacher]);
+                course.setString(4, codes[department] + (10000 + i));
+                course.setString(5, codes[department] + " Course " + (i + 1));
+                course.setDouble(6, courseHours[i]);
+                course.setDouble(7, random.nextInt(4) == 0 ? 1.5 : 1.0);
+                course.setInt(8, Math.max(100, 2 * students * coursesPerStudent / courses));
+                course.addBatch();
+
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    course.executeBatch();
+                }
+            }
+
+            course.executeBatch();
+        }
+
+        return courses;
+    }
+
+    /*
+     * Enrolls each student (by index) in coursesPerStudent distinct random courses.
+     */
+
+    private void enroll(IntList[] rosters, Random random) {
+        int[] order = new int[courses];
+
+        for (int i = 0; i < courses; i++) {
+            order[i] = i;
+            rosters[i] = new IntList(Math.max(1, students * coursesPerStudent / courses));
+        }
+
+        for (int student = 0; student < students; student++) {
+            for (int i = 0; i < coursesPerStudent; i++) {
+                int j = i + random.nextInt(courses - i);
+                int swap = order[i];
+
+                order[i] = order[j];
+                order[j] = swap;
+                rosters[order[i]].add(student);
+            }
+        }
+    }
+
+    /*
+     * Writes each course's assignments, the assignment grades of its roster, and the
+     * resulting course grades, and accumulates each student's GPA totals.
+     */
+
+    private long insertGrades(Connection conn, Ids ids, int[] courseIds, double[] courseHours, IntList[] rosters,
+            double[] gradePoints, double[] creditHours, Random random) throws SQLException {
+
+        long rows = 0;
+        int pending = 0;
+
+        try (PreparedStatement assignment = conn.prepareStatement(
+                 "INSERT INTO assignments (course_id, assignment_id, marking_period, is_midterm, is_final, title, point_value) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement grade = conn.prepareStatement(
+                 "INSERT INTO assignment_grades (course_id, assignment_id, student_id, points_earned, points_possible) " +
+                     "VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement courseGrade = conn.prepareStatement(
+                 "INSERT INTO course_grades (course_id, student_id, mp1, mp2, midterm_exam, mp3, mp4, final_exam, grade) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement enrollment = conn.prepareStatement(
+                 "UPDATE courses SET enrollment = ? WHERE course_id = ?")) {
+
+            for (int c = 0; c < courses; c++) {
+                IntList roster = rosters[c];
+                int courseId = courseIds[c];
+
+                // one assignment list per marking period (1-4), plus a midterm (5) and a final (6)
+
+                int count = 4 * assignmentsPerMarkingPeriod + 2;
+                int[] assignmentIds = new int[count];
+                int[] markingPeriods = new int[count];
+                int[] pointValues = new int[count];
+
+                for (int a = 0; a < count; a++) {
+                    boolean midterm = a == count - 2;
+                    boolean exam = a >= count - 2;
+
+                    assignmentIds[a] = ++ids.assignment;
+                    markingPeriods[a] = exam ? (midterm ? 5 : 6) : 1 + a / Math.max(1, assignmentsPerMarkingPeriod);
+                    pointValues[a] = exam ? 100 : 10 * (1 + random.nextInt(10));
+
+                    assignment.setInt(1, courseId);
+                    assignment.setInt(2, assignmentIds[a]);
+                    assignment.setInt(3, markingPeriods[a]);
+                    assignment.setInt(4, midterm ? 1 : 0);
+                    assignment.setInt(5, exam && !midterm ? 1 : 0);
+                    assignment.setString(6, exam ? (midterm ? "Midterm Exam" : "Final Exam") : "Assignment " + (a + 1));
+                    assignment.setInt(7, pointValues[a]);
+                    assignment.addBatch();
+                }
+
+                assignment.executeBatch();
+                rows += count;
+
+                double[] scores = new double[GradeKernel.SLOTS];
+                int[] graded = new int[GradeKernel.SLOTS];
+
+                for (int s = 0; s < roster.size(); s++) {
+                    int student = roster.get(s);
+                    int studentId = ids.firstStudent + student;
+                    double ability = Math.min(100, Math.max(40, 82 + random.nextGaussian() * 9));
+
+                    Arrays.fill(scores, 0);
+                    Arrays.fill(graded, 0);
+
+                    for (int a = 0; a < count; a++) {
+                        double percent = Math.min(100, Math.max(0, ability + random.nextGaussian() * 8));
+                        int earned = (int) Math.round(pointValues[a] * percent / 100);
+                        int slot = getSlot(markingPeriods[a]);
+
+                        grade.setInt(1, courseId);
+                        grade.setInt(2, assignmentIds[a]);
+                        grade.setInt(3, studentId);
+                        grade.setInt(4, earned);
+                        grade.setInt(5, pointValues[a]);
+                        grade.addBatch();
+
+                        scores[slot] += (earned * 1.0 / pointValues[a]) * 100;
+                        graded[slot]++;
+
+                        if (++pending == BATCH_SIZE) {
+                            grade.executeBatch();
+                            pending = 0;
+                        }
+                    }
+
+                    int mask = 0;
+
+                    courseGrade.setInt(1, courseId);
+                    courseGrade.setInt(2, studentId);
+
+                    for (int slot = 0; slot < GradeKernel.SLOTS; slot++) {
+                        if (graded[slot] > 0) {
+                            scores[slot] /= graded[slot];
+                            mask |= 1 << slot;
+                            courseGrade.setDouble(3 + slot, scores[slot]);
+                        } else {
+                            courseGrade.setNull(3 + slot, Types.REAL);
+                        }
+                    }
+
+                    double courseGradeValue = GradeKernel.grade(scores, 0, mask);
+
+                    if (courseGradeValue < 0) {
+                        courseGrade.setNull(9, Types.REAL);
+                    } else {
+                        courseGrade.setDouble(9, courseGradeValue);
+                        gradePoints[student] += GpaEngine.getGradePoints(courseGradeValue) * courseHours[c];
+                        creditHours[student] += courseHours[c];
+                    }
+                    courseGrade.addBatch();
+                }
+
+                courseGrade.executeBatch();
+                rows += (long) roster.size() * (count + 1);
+
+                enrollment.setInt(1, roster.size());
+                enrollment.setInt(2, courseId);
+                enrollment.addBatch();
+            }
+
+            grade.executeBatch();
+            enrollment.executeBatch();
+        }
+
+        return rows;
+    }
+
+    private long insertStudents(Connection conn, Ids ids, int[] gradeLevels, double[] gradePoints,
+            double[] creditHours) throws SQLException {
+
+        try (PreparedStatement user = conn.prepareStatement(
+                 "INSERT INTO users (user_id, account_type, username, auth, last_login) VALUES (?, 'student', ?, ?, ?)");
+             PreparedStatement student = conn.prepareStatement(
+                 "INSERT INTO students (student_id, first_name, last_name, graduation, grade_level, gpa, class_rank, user_id) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, 0, ?)")) {
+
+            String auth = Utils.getHash(PASSWORD);
+
+            for (int i = 0; i < students; i++) {
+                int userId = ++ids.user;
+                int studentId = ids.firstStudent + i;
+                double gpa = creditHours[i] > 0
+                    ? Math.round(gradePoints[i] / creditHours[i] * 100.0) / 100.0
+                    : -1.0;
+
+                user.setInt(1, userId);
+                user.setString(2, "student" + studentId);
+                user.setString(3, auth);
+                user.setString(4, LAST_LOGIN);
+                user.addBatch();
+
+                student.setInt(1, studentId);
+                student.setString(2, "Student");
+                student.setString(3, String.valueOf(studentId));
+                student.setInt(4, 2031 - gradeLevels[i]);
+                student.setInt(5, gradeLevels[i]);
+                student.setDouble(6, gpa);
+                student.setInt(7, userId);
+                student.addBatch();
+
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    user.executeBatch();
+                    student.executeBatch();
+                }
+            }
+
+            user.executeBatch();
+            student.executeBatch();
+        }
+
+        return 2L * students;
+    }
+
+    /*
+     * Maps a marking period (1-4, 5 for the midterm, 6 for the final) onto a grade slot.
+     */
+
+    private static int getSlot(int markingPeriod) {
+        switch (markingPeriod) {
+            case 1: return GradeKernel.MP1;
+            case 2: return GradeKernel.MP2;
+            case 3: return GradeKernel.MP3;
+            case 4: return GradeKernel.MP4;
+            case 5: return GradeKernel.MIDTERM;
+            default: return GradeKernel.FINAL;
+        }
+    }
+
+    /////// IDS ///////////////////////////////////////////////////////////////////////////
+
+    /*
+     * The last id used in each table, so generated rows can be given explicit ids and
+     * referenced before they are written.
+     */
+
+    private static class Ids {
+
+        private int user;
+        private int teacher;
+        private int course;
+        private int assignment;
+        private final int firstStudent;
+
+        private Ids(Connection conn) throws SQLException {
+            user = max(conn, "SELECT max(user_id) FROM users");
+            teacher = max(conn, "SELECT max(teacher_id) FROM teachers");
+            course = max(conn, "SELECT max(course_id) FROM courses");
+            assignment = max(conn, "SELECT max(assignment_id) FROM assignments");
+            firstStudent = max(conn, "SELECT max(student_id) FROM students") + 1;
+        }
+
+        private int max(Connection conn, String sql) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+}
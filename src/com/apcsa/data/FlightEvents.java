@@ -0,0 +1,110 @@
+package com.apcsa.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events emitted by the data layer. They are recorded by any
+ * standard recording (e.g. jcmd <pid> JFR.start), show up under PowerSchool in JDK Mission
+ * Control, and cost next to nothing while no recording is running.
+ */
+
+final class FlightEvents {
+
+    // used only to ask whether a type is being recorded, so that nothing is allocated per
+    // statement, commit, or borrow while no recording is running
+
+    static final Statement STATEMENT = new Statement();
+    static final ConnectionWait CONNECTION_WAIT = new ConnectionWait();
+    static final Commit COMMIT = new Commit();
+
+    private FlightEvents() {
+    }
+
+    /////// STATEMENT /////////////////////////////////////////////////////////////////////
+
+    @Name("com.apcsa.Statement")
+    @Label("Statement")
+    @Category({ "PowerSchool", "Database" })
+    @Description("A SQL statement executed through the connection pool; a query lasts until its last row is read")
+    @StackTrace(false)
+    static final class Statement extends Event {
+
+        @Label("Statement")
+        @Description("The QueryUtils constant name, or the SQL text")
+        String statement;
+
+        @Label("Caller")
+        @Description("The PowerSchool method that borrowed the connection")
+        String caller;
+
+        @Label("Database Time")
+        @Description("The time spent executing the statement and reading its results, without the caller's work between rows")
+        @Timespan(Timespan.NANOSECONDS)
+        long databaseTime;
+
+        @Label("Rows")
+        @Description("The number of rows changed, or read from a query's results")
+        long rows;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    /////// CONNECTION WAIT ///////////////////////////////////////////////////////////////
+
+    @Name("com.apcsa.ConnectionWait")
+    @Label("Connection Wait")
+    @Category({ "PowerSchool", "Database" })
+    @Description("Time spent borrowing a connection from the pool")
+    @StackTrace(false)
+    static final class ConnectionWait extends Event {
+
+        @Label("Failed")
+        @Description("Whether the borrow timed out or failed")
+        boolean failed;
+    }
+
+    /////// COMMIT ////////////////////////////////////////////////////////////////////////
+
+    @Name("com.apcsa.Commit")
+    @Label("Commit")
+    @Category({ "PowerSchool", "Database" })
+    @Description("A transaction commit")
+    @StackTrace(false)
+    static final class Commit extends Event {
+
+        @Label("Caller")
+        @Description("The PowerSchool method that borrowed the connection")
+        String caller;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    /////// ACTION ////////////////////////////////////////////////////////////////////////
+
+    @Name("com.apcsa.Action")
+    @Label("Action")
+    @Category({ "PowerSchool", "Application" })
+    @Description("A menu action, from selection until it returns to the menu")
+    @StackTrace(false)
+    static final class Action extends Event {
+
+        @Label("Action")
+        String action;
+
+        @Label("Round Trips")
+        @Description("The number of statements executed")
+        int roundTrips;
+
+        @Label("Connections")
+        @Description("The number of connections borrowed")
+        int connections;
+    }
+}
@@ -0,0 +1,223 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import com.apcsa.util.IntIntMap;
+import com.apcsa.util.LongDoubleMap;
+
+class GpaEngine {
+
+    private static final double UNGRADED = -1;
+
+    // keyed by (student, course): grade points, or UNGRADED, and credit hours
+
+    private final LongDoubleMap coursePoints = new LongDoubleMap(1024);
+    private final LongDoubleMap courseHours = new LongDoubleMap(1024);
+
+    // keyed by student: running totals over graded courses; present iff the student is loaded
+
+    private final LongDoubleMap gradePoints = new LongDoubleMap(256);
+    private final LongDoubleMap creditHours = new LongDoubleMap(256);
+
+    /**
+     * Records a new course grade for a student and returns the resulting GPA. The first
+     * time a student is seen, their course grades and credit hours are loaded with a
+     * single query; after that only the changed course is applied as a delta.
+     *
+     * Callers must run this inside the transaction that writes the course grade, and call
+     * forget(studentId) if that transaction is rolled back.
+     *
+     * @param conn the current database connection
+     * @param studentId the student
+     * @param courseId the course whose grade changed
+     * @param grade the new course grade, or -1 if the course is ungraded
+     * @return the student's GPA rounded to two decimal places, or -1.0 with no graded courses
+     * @throws SQLException
+     */
+
+    synchronized double apply(Connection conn, int studentId, int courseId, double grade) throws SQLException {
+        if (!creditHours.containsKey(studentId)) {
+            load(conn, studentId);
+        }
+
+        set(studentId, courseId, grade);
+
+        double hours = creditHours.get(studentId, 0);
+
+        if (hours <= 0) {
+            return -1.0;
+        }
+
+        return Math.round(gradePoints.get(studentId, 0) / hours * 100.0) / 100.0;
+    }
+
+    /**
+     * Loads, with a single query, the running totals of every student enrolled in a course
+     * that are not already known. Used before applying a whole course's worth of grades.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @throws SQLException
+     */
+
+    synchronized void preload(Connection conn, int courseId) throws SQLException {
+        IntIntMap loading = new IntIntMap();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_GRADE_POINTS)) {
+            stmt.setInt(1, courseId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int studentId = rs.getInt("student_id");
+
+                    if (!creditHours.containsKey(studentId)) {
+                        loading.put(studentId, 1);
+                        gradePoints.put(studentId, 0);
+                        creditHours.put(studentId, 0);
+                    }
+
+                    if (loading.containsKey(studentId)) {
+                        add(studentId, rs);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            clear();    // no partially loaded totals may survive a failed query
+            throw e;
+        }
+    }
+
+    /**
+     * Discards the running totals of a student so they are reloaded on next use.
+     *
+     * @param studentId the student
+     */
+
+    synchronized void forget(int studentId) {
+        gradePoints.remove(studentId);
+        creditHours.remove(studentId);
+    }
+
+    /**
+     * Discards the running totals of every student.
+     */
+
+    synchronized void clear() {
+        coursePoints.clear();
+        courseHours.clear();
+        gradePoints.clear();
+        creditHours.clear();
+    }
+
+    /**
+     * Maps a percentage course grade onto the 4.0 scale.
+     *
+     * @param grade the course grade
+     * @return the grade points
+     */
+
+    static double getGradePoints(double grade) {
+        if (grade >= 93) {
+            return 4.0;
+        } else if (grade >= 90) {
+            return 3.7;
+        } else if (grade >= 87) {
+            return 3.3;
+        } else if (grade >= 83) {
+            return 3.0;
+        } else if (grade >= 80) {
+            return 2.7;
+        } else if (grade >= 77) {
+            return 2.3;
+        } else if (grade >= 73) {
+            return 2.0;
+        } else if (grade >= 70) {
+            return 1.7;
+        } else if (grade >= 67) {
+            return 1.3;
+        } else if (grade >= 65) {
+            return 1.0;
+        } else {
+            return 0.0;
+        }
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Loads a student's course grades and credit hours.
+     */
+
+    private void load(Connection conn, int studentId) throws SQLException {
+        gradePoints.put(studentId, 0);
+        creditHours.put(studentId, 0);
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_GRADE_POINTS)) {
+            stmt.setInt(1, studentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    add(studentId, rs);
+                }
+            }
+        } catch (SQLException e) {
+            forget(studentId);
+            throw e;
+        }
+    }
+
+    /*
+     * Adds the course on the current row of a grade points query to a student's totals.
+     */
+
+    private void add(int studentId, ResultSet rs) throws SQLException {
+        long key = key(studentId, rs.getInt("course_id"));
+        double grade = rs.getDouble("grade");
+        boolean graded = !rs.wasNull();
+
+        courseHours.put(key, rs.getDouble("credit_hours"));
+        coursePoints.put(key, UNGRADED);
+        set(studentId, key, graded ? grade : UNGRADED);
+    }
+
+    /*
+     * Replaces a course's contribution to a student's totals with the one implied by its
+     * new grade.
+     */
+
+    private void set(int studentId, int courseId, double grade) {
+        set(studentId, key(studentId, courseId), grade);
+    }
+
+    private void set(int studentId, long key, double grade) {
+        if (!courseHours.containsKey(key)) {
+            return;     // not enrolled; nothing contributes to the GPA
+        }
+
+        double hours = courseHours.get(key, 0);
+        double points = coursePoints.get(key, UNGRADED);
+
+        if (points != UNGRADED) {
+            gradePoints.put(studentId, gradePoints.get(studentId, 0) - points * hours);
+            creditHours.put(studentId, creditHours.get(studentId, 0) - hours);
+        }
+
+        points = grade < 0 ? UNGRADED : getGradePoints(grade);
+        coursePoints.put(key, points);
+
+        if (points != UNGRADED) {
+            gradePoints.put(studentId, gradePoints.get(studentId, 0) + points * hours);
+            creditHours.put(studentId, creditHours.get(studentId, 0) + hours);
+        }
+    }
+
+    /*
+     * Packs a student and course into a single map key.
+     */
+
+    private static long key(int studentId, int courseId) {
+        return ((long) studentId << 32) | (courseId & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,132 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+class IdAllocator {
+
+    private final String sequence;
+    private final int blockSize;
+    private final AtomicReference<Block> block = new AtomicReference<Block>(new Block(0, 0));
+
+    /**
+     * Creates an instance of the IdAllocator class.
+     *
+     * @param sequence the name of the row in the sequences table
+     * @param blockSize the number of ids reserved from the database at a time
+     */
+
+    IdAllocator(String sequence, int blockSize) {
+        this.sequence = sequence;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Hands out the next id. Ids come from a block reserved in the sequences table, so
+     * most calls are a single atomic increment; the database is only touched (in its own
+     * committed transaction) when the block runs out. Reservations are made with a write
+     * lock on the database, so ids are unique across processes as well as threads. Ids
+     * left in a block when the application exits are never reused.
+     *
+     * @param connections where the connection used to reserve a new block is borrowed from
+     * @return a unique id
+     * @throws SQLException if a new block cannot be reserved
+     */
+
+    int next(ConnectionSource connections) throws SQLException {
+        while (true) {
+            Block current = block.get();
+            long id = current.next.getAndIncrement();
+
+            if (id < current.limit) {
+                return (int) id;
+            }
+
+            refill(connections, current);
+        }
+    }
+
+    /**
+     * Discards the current block, e.g. after the database has been rebuilt.
+     */
+
+    void clear() {
+        block.set(new Block(0, 0));
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Reserves a new block unless another thread already replaced the exhausted one.
+     */
+
+    private synchronized void refill(ConnectionSource connections, Block exhausted) throws SQLException {
+        if (block.get() != exhausted) {
+            return;
+        }
+
+        try (Connection conn = connections.getConnection()) {
+            conn.setAutoCommit(false);
+
+            // the update takes the write lock first, so the read below sees our reservation
+
+            try (PreparedStatement update = conn.prepareStatement(QueryUtils.RESERVE_SEQUENCE_BLOCK);
+                 PreparedStatement select = conn.prepareStatement(QueryUtils.GET_SEQUENCE_VALUE)) {
+
+                update.setInt(1, blockSize);
+                update.setString(2, sequence);
+
+                if (update.executeUpdate() != 1) {
+                    conn.rollback();
+                    throw new SQLException("Unknown sequence: " + sequence);
+                }
+
+                select.setString(1, sequence);
+
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+
+                    long limit = rs.getLong("next_value");
+
+                    conn.commit();
+                    block.set(new Block(limit - blockSize, limit));
+                }
+            }
+        }
+    }
+
+    /////// CONNECTION SOURCE /////////////////////////////////////////////////////////////
+
+    interface ConnectionSource {
+
+        /**
+         * Borrows a connection. Closing it hands it back.
+         *
+         * @return a database connection
+         * @throws SQLException
+         */
+
+        Connection getConnection() throws SQLException;
+    }
+
+    /////// BLOCK /////////////////////////////////////////////////////////////////////////
+
+    /*
+     * A reserved range of ids, [start, limit).
+     */
+
+    private static class Block {
+
+        private final AtomicLong next;
+        private final long limit;
+
+        private Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
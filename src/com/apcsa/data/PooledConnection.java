@@ -0,0 +1,248 @@
+package com.apcsa.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statements;
+    private volatile long lastUsed;
+
+    /**
+     * Creates an instance of the PooledConnection class.
+     *
+     * @param pool the owning pool
+     * @param physical the underlying database connection
+     * @param statementCacheSize the maximum number of prepared statements cached
+     */
+
+    PooledConnection(ConnectionPool pool, Connection physical, int statementCacheSize) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statements = new StatementCache(physical, statementCacheSize);
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Hands out a fresh logical handle to this connection. Closing the handle returns the
+     * connection to the pool; any later use of the same handle fails as if it were closed.
+     *
+     * @return the logical connection
+     */
+
+    Connection lease() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new Handle(QueryMetrics.getInstance().begin()));
+    }
+
+    /**
+     * @param timeout the number of seconds allowed for validation
+     * @return true if the underlying connection is still usable; false otherwise
+     */
+
+    boolean isValid(int timeout) {
+        try {
+            return !physical.isClosed() && physical.isValid(timeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Restores the connection to its default state before it is pooled again. Work left
+     * uncommitted by the borrower is rolled back.
+     *
+     * @return true if the connection can be reused; false otherwise
+     */
+
+    boolean recycle() {
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the underlying database connection.
+     */
+
+    void closePhysical() {
+        statements.clear();
+
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records the current time as the last time this connection was used.
+     */
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the last time this connection was returned to the pool
+     */
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @return the statement cache of this connection
+     */
+
+    StatementCache getStatementCache() {
+        return statements;
+    }
+
+    /////// LOGICAL HANDLE ////////////////////////////////////////////////////////////////
+
+    private class Handle implements InvocationHandler {
+
+        private final QueryMetrics.Span span;
+        private boolean closed;
+
+        private Handle(QueryMetrics.Span span) {
+            this.span = span;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+
+                        if (span != null) {
+                            span.end();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + (closed ? ", closed" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection is closed.");
+            }
+
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return statements.prepare((String) args[0], (Connection) proxy, span);
+            }
+
+            if (method.getName().equals("commit")) {
+                return commit(span);
+            }
+
+            Object result;
+
+            try {
+                result = method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (method.getName().equals("createStatement")) {
+                result = Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                    new Class<?>[] { Statement.class }, new TimedStatement((Statement) result, span));
+            }
+
+            return result;
+        }
+    }
+
+    /*
+     * Commits the borrower's transaction, reporting it as a com.apcsa.Commit event while a
+     * flight recording is running.
+     */
+
+    private Object commit(QueryMetrics.Span span) throws SQLException {
+        if (!FlightEvents.COMMIT.isEnabled()) {
+            physical.commit();
+
+            return null;
+        }
+
+        FlightEvents.Commit event = new FlightEvents.Commit();
+        boolean failed = true;
+
+        event.begin();
+
+        try {
+            physical.commit();
+            failed = false;
+
+            return null;
+        } finally {
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.caller = QueryMetrics.getBorrower(span);
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    /*
+     * Times the SQL executed through a plain (unprepared) statement.
+     */
+
+    private static class TimedStatement implements InvocationHandler {
+
+        private final Statement physical;
+        private final QueryMetrics.Span span;
+        private QueryMetrics.Query query;
+
+        private TimedStatement(Statement physical, QueryMetrics.Span span) {
+            this.physical = physical;
+            this.span = span;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if ((name.equals("close") || name.startsWith("execute")) && query != null) {
+                query.finish();
+                query = null;
+            }
+
+            Object result = QueryMetrics.getInstance().execute(span, null, null, physical, method, args);
+
+            if (name.equals("executeQuery")) {
+                query = QueryMetrics.getQuery(result);
+            }
+
+            return result;
+        }
+    }
+}
@@ -6,24 +6,53 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import com.apcsa.controller.Utils;
 import com.apcsa.model.Administrator;
+import com.apcsa.model.Assignment;
+import com.apcsa.model.AssignmentGrade;
+import com.apcsa.model.Course;
+import com.apcsa.model.GradeEntry;
+import com.apcsa.model.RosterEntry;
 import com.apcsa.model.Student;
 import com.apcsa.model.Teacher;
 import com.apcsa.model.User;
+import com.apcsa.util.GradeKernel;
+import com.apcsa.util.IntIntMap;
+import com.apcsa.util.IntList;
+import com.apcsa.util.LongDoubleMap;
 
 public class PowerSchool {
 
     private final static String PROTOCOL = "jdbc:sqlite:";
-    private final static String DATABASE_URL = "data/powerschool.db";
+    private final static String DATABASE_URL = System.getProperty("powerschool.db", "data/powerschool.db");
+    private final static String SETUP_SCRIPT = System.getProperty("powerschool.setupScript", "config/setup.sql");
+    private final static int SCRIPT_BATCH_SIZE = 1000;
+
+    private static ConnectionPool pool;
+    private static PragmaProfile profile = PragmaProfile.FAST;
+    private static final GpaEngine gpaEngine = new GpaEngine();
+    private static volatile CourseCatalog catalog;
+    private static final AssignmentCache assignments = new AssignmentCache();
+    private static final AtomicLong gradeVersion = new AtomicLong();     // bumped after every committed course grade change
+    private static final IdAllocator assignmentIds =
+        new IdAllocator("assignments", Integer.getInteger("powerschool.idBlockSize", 20));
+    private static final RankEngine ranks =
+        new RankEngine(RankEngine.Mode.valueOf(System.getProperty("powerschool.rankMode", "COMPETITION").toUpperCase()));
+    private static final SlowQueryLog slowQueries = new SlowQueryLog(PROTOCOL + DATABASE_URL,
+        new File(System.getProperty("powerschool.slowQueryLog",
+            new File(new File(DATABASE_URL).getAbsoluteFile().getParentFile(), "slow-queries.log").getPath())),
+        Long.getLong("powerschool.slowQueryMillis", 100));
 
     /**
      * Initializes the database if needed (or if requested).
@@ -33,6 +62,20 @@ public class PowerSchool {
      */
 
     public static void initialize(boolean force) {
+        initialize(force, profile);
+    }
+
+    /**
+     * Initializes the database if needed (or if requested), applying a pragma profile to
+     * every connection handed out from now on.
+     *
+     * @param force whether or not to force-reset the database
+     * @param pragmaProfile the durability/performance profile
+     */
+
+    public static void initialize(boolean force, PragmaProfile pragmaProfile) {
+        configure(pragmaProfile);
+
         if (force) {
             reset();    // force reset
         } else {
@@ -59,6 +102,10 @@ public class PowerSchool {
                 reset();
             }
         }
+
+        createSequences();
+        createIndexes();
+        rankStudents();
     }
 
     /**
@@ -268,77 +315,95 @@ public class PowerSchool {
         return teachers;
     }
     
+    /**
+     * Retrieves the course numbers of a department's courses.
+     *
+     * @param departmentId the department
+     * @return the course numbers, ordered by course id
+     */
+
     public static ArrayList<String> getCourses(int departmentId) {
-		ArrayList<String> courses = new ArrayList<String>();
-		
-		try (Connection conn = getConnection();
-       		 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSES)) {
-       	 stmt.setString(1, String.valueOf(departmentId));        
-            try (ResultSet rs = stmt.executeQuery()) {
-           	 while(rs.next()) {
-                    courses.add(rs.getString("course_no"));                 
-           	 }
-            }
+        ArrayList<String> courses = new ArrayList<String>();
+
+        for (Course course : getCourseCatalog().getCourses(departmentId)) {
+            courses.add(course.getCourseNo());
+        }
+
+        return courses;
+    }
+
+    /**
+     * Retrieves a student's courses and grades for the duration of a login session. The
+     * current session is returned as is unless a course grade has changed since it was
+     * loaded, in which case the courses are reloaded with a single query.
+     *
+     * @param studentId the student
+     * @param session the student's current session, or null to load one
+     * @return the up-to-date session; null if it could not be loaded
+     */
+
+    public static StudentSession getStudentSession(int studentId, StudentSession session) {
+        long version = gradeVersion.get();
+
+        if (session != null && session.getStudentId() == studentId && session.getVersion() == version) {
+            return session;
+        }
+
+        try (Connection conn = getConnection()) {
+            return StudentSession.load(conn, studentId, version);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-		
-		return courses;
-	}
-    
-    public static int assignmentRows() {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.PREVIOUS_ASSIGNMENT_ID)) {
-                  
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("count(*)");
+
+        return session;
+    }
+
+    /**
+     * Retrieves the course catalog, loading it on first use. The catalog is an immutable
+     * snapshot of the courses table that is replaced whenever the database is rebuilt.
+     *
+     * @return the course catalog; empty if the courses could not be loaded
+     */
+
+    public static CourseCatalog getCourseCatalog() {
+        CourseCatalog current = catalog;
+
+        if (current == null) {
+            synchronized (PowerSchool.class) {
+                current = catalog;
+
+                if (current == null) {
+                    try (Connection conn = getConnection()) {
+                        current = CourseCatalog.load(conn);
+                        catalog = current;
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+
+                        return CourseCatalog.empty();
+                    }
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
 
-        return 1;
+        return current;
     }
     
-    public static int getCourseId(String courseNumber) {
-    	try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID)) {
+    /**
+     * Allocates a new, unique assignment id.
+     *
+     * @return the assignment id; -1 if none could be allocated
+     */
 
-    			stmt.setString(1, courseNumber);
-               try (ResultSet rs = stmt.executeQuery()) {
-                   if (rs.next()) {
-                       return rs.getInt("course_Id");
-                   }
-               }
-           } catch (SQLException e) {
-               e.printStackTrace();
-           }
+    public static int nextAssignmentId() {
+        try {
+            return assignmentIds.next(PowerSchool::getConnection);
+        } catch (SQLException e) {
+            e.printStackTrace();
 
-           return 0;
+            return -1;
+        }
     }
-    
-    public static int getAssignmentId(int courseId, int markingPeriod, String title) {
-		try (Connection conn = getConnection();
-	       		 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_ID)) {
-				
-				conn.setAutoCommit(false);
-				stmt.setInt(1, courseId);
-	            stmt.setInt(2, markingPeriod); 
-	            stmt.setString(3, title); 
-	            
-	            try (ResultSet rs = stmt.executeQuery()) {
-
-	           		return rs.getInt(2);                 
-	            }
-	        } catch (SQLException e) {
-	            e.printStackTrace();
-	        }
-			
-			return 0;
-	}
-    
+
     public static int addAssignment(int courseId, int assignmentId, int markingPeriod, int isMidterm, int isFinal, String title, int pointValue) {
     	try (Connection conn = getConnection();
            	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT)) {
@@ -354,6 +419,7 @@ public class PowerSchool {
 
                if (stmt.executeUpdate() == 1) {
                    conn.commit();
+                   assignments.invalidate(courseId, markingPeriod);
                    return 1;
                } else {
                    conn.rollback();
@@ -364,96 +430,23 @@ public class PowerSchool {
            }
     }
     
-    public static int getlastAssignmentId() {
-		try (Connection conn = getConnection();
-	       		 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_LAST_ASSIGNMENT_ID)) {    
-	            try (ResultSet rs = stmt.executeQuery()) {
-	           	 if(rs.next()) {
-	                    return rs.getInt("assignment_id");             
-	           	 }
-	            }
-	        } catch (SQLException e) {
-	            e.printStackTrace();
-	        }
-		return 0;
-	}
-    
-    public static ArrayList<String> getAssignments(int courseId, int markingPeriod) {
-		ArrayList<String> assignments = new ArrayList<String>();
-		
-		try (Connection conn = getConnection();
-       		 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENTS)) {
-			
-			conn.setAutoCommit(false);
-			stmt.setInt(1, courseId);
-            stmt.setInt(2, markingPeriod); 
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-            	while(rs.next()) {
-            		assignments.add(rs.getString("title"));                 
-           	 	}
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-		
-		return assignments;
-	}
-    
-    public static ArrayList<String> getPointValues(int courseId, int markingPeriod) {
-		ArrayList<String> pointValues = new ArrayList<String>();
-		
-		try (Connection conn = getConnection();
-       		 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_POINT_VALUES)) {
-			
-			conn.setAutoCommit(false);
-			stmt.setInt(1, courseId);
-            stmt.setInt(2, markingPeriod); 
-            
-            try (ResultSet rs = stmt.executeQuery()) {
-           	 while(rs.next()) {
-           		pointValues.add(rs.getString("point_value"));                 
-           	 }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-		
-		return pointValues;
-	}
-    
-    public static ArrayList<String> getAssignmentIds() {
-    	ArrayList<String> assignmentIds = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_IDS)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	 assignmentIds.add(rs.getString("assignment_id"));
-     				}
-     			}	
-     		return assignmentIds;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return assignmentIds;
-    }
-    
-    public static ArrayList<String> acquireAssignmentIds() {
-    	ArrayList<String> assignmentIds = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_IDS)) {
-     			
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	 assignmentIds.add(rs.getString("assignment_id"));
-     				}
-     			}	
-     		return assignmentIds;
+    /**
+     * Retrieves the assignments of a course in a marking period. Assignments are cached per
+     * course and marking period until one is added or deleted.
+     *
+     * @param courseId the course
+     * @param markingPeriod the marking period (5 and 6 are the midterm and final exams)
+     * @return the assignments, in the order they were created; empty on error
+     */
+
+    public static List<Assignment> getAssignments(int courseId, int markingPeriod) {
+        try (Connection conn = getConnection()) {
+            return assignments.get(conn, courseId, markingPeriod);
         } catch (SQLException e) {
             e.printStackTrace();
         }
-     	return assignmentIds;
+
+        return Collections.emptyList();
     }
     
     public static ArrayList<String> getStudentsByCourseWithoutObject(String courseNo) {
@@ -570,6 +563,7 @@ public class PowerSchool {
                
                stmt.executeUpdate();
                    conn.commit();
+                   assignments.invalidate(courseId, markingPeriod);
                    return 1;
                
            } catch (SQLException e) {
@@ -577,896 +571,844 @@ public class PowerSchool {
            }
     }
     
+    /**
+     * Deletes every grade of an assignment and, in the same transaction, recomputes the
+     * grades of every student in the course, which no longer count the assignment.
+     *
+     * @param assignmentId the assignment
+     * @param courseId the course
+     * @return 1 if the grades were deleted and recomputed; -1 otherwise
+     */
+
     public static int deleteAssignmentGrades(int assignmentId, int courseId) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.DELETE_ASSIGNMENT_GRADES)) {
-               
-    		   conn.setAutoCommit(false);
-               stmt.setInt(1, assignmentId);
-               stmt.setInt(2, courseId);
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
 
-               stmt.executeUpdate();
-               conn.commit();
-               return 1;
-           } catch (SQLException e) {
-        	   
-               return -1;
-           }
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.DELETE_ASSIGNMENT_GRADES)) {
+                    stmt.setInt(1, assignmentId);
+                    stmt.setInt(2, courseId);
+
+                    stmt.executeUpdate();
+                }
+
+                recomputeCourseGrades(conn, courseId);
+                conn.commit();
+                gradeVersion.incrementAndGet();
+
+                return 1;
+            } catch (SQLException e) {
+                conn.rollback();
+                gpaEngine.clear();      // totals of any number of students may be ahead of the database
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+
+            return -1;
+        }
     }
     
-    public static ArrayList<Integer> getAssignmentIdByMP(int markingPeriod) {
-        ArrayList<Integer> assignments = new ArrayList<Integer>();
-        try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_BY_MP)) {
-
-                stmt.setInt(1,  markingPeriod);
-                 try (ResultSet rs = stmt.executeQuery()) {
-                     while (rs.next()) {
-                         assignments.add(rs.getInt("assignment_id"));
-                     }
-                 }
-             return assignments;
+    public static void changePassword(String username, String password) {
+        try (Connection conn = getConnection()) {
+            int isChanged = updatePassword(conn, username, Utils.getHash(password));
+            if (isChanged != 1) {
+                System.err.println("Unable to successfully create password.");
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            System.out.println("problem with get grade by mp!");
-
         }
-         return assignments;
     }
     
-    public static ArrayList<Double> getGrades(int courseId, int assignmentId, int studentId) {
-        ArrayList<Double> totalGrades = new ArrayList<Double>();
-        try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_GRADES)) {
-
-                stmt.setInt(1,  courseId);
-                stmt.setInt(2,  assignmentId);
-                stmt.setInt(3,  studentId);
-                 try (ResultSet rs = stmt.executeQuery()) {
-                     while (rs.next()) {
-                         totalGrades.add(rs.getDouble("points_earned"));
-                         totalGrades.add(rs.getDouble("points_possible"));
-                     }
-                 }
-             return totalGrades;
+    private static int updatePassword(Connection conn, String username, String password) {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_AUTH_SQL)) {
+            conn.setAutoCommit(false);
+            stmt.setString(1, password);
+            stmt.setString(2, username);
+            if (stmt.executeUpdate() == 1) {
+                conn.commit();
+                return 1;
+            } else {
+                conn.rollback();
+                return -1;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
-            System.out.println("problem with get grade");
+            return -1;
         }
-         return totalGrades;
     }
     
-    public static int updateCourseGradesMP1(int courseId, int studentId, double average) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP1)) {
+    /**
+     * Resets a user's password.
+     * 
+     * @param username the user's username
+     */
+    
+    public static boolean resetPassword(String username) {
+    	try (Connection conn = getConnection();
+                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_AUTH_SQL)) {
 
-               conn.setAutoCommit(false);
-               stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
+    		conn.setAutoCommit(false);
+            stmt.setString(1, Utils.getHash(username));
+            stmt.setString(2, username);
 
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
+            if (stmt.executeUpdate() == 1) {
+                conn.commit();
+                return true;
+            } else {
+                conn.rollback();
+               return false;
+
+            }
            } catch (SQLException e) {
-               return -1;
+               e.printStackTrace();
+               return false;
            }
     }
-	
-	public static int updateCourseGradesMP2(int courseId, int studentId, double average) {
+    
+    public static int resetLastLogin(String username) {
         try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP2)) {
+                PreparedStatement stmt = conn.prepareStatement(QueryUtils.RESET_LAST_LOGIN_SQL)){
 
-               conn.setAutoCommit(false);
-               stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
+            conn.setAutoCommit(false);
+            stmt.setString(1, username);
 
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
+            stmt.executeUpdate();
+                conn.commit();
+                return 1;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+
+            return -1;
+        }
     }
+    
+    /**
+     * Retrieves the roster of a course with each student's grade on an assignment.
+     *
+     * @param courseId the course
+     * @param assignmentId the assignment whose current grades are included
+     * @return the roster, ordered by last name and first name
+     */
+
+    public static ArrayList<RosterEntry> getCourseRoster(int courseId, int assignmentId) {
+        ArrayList<RosterEntry> roster = new ArrayList<RosterEntry>();
 
-	public static int updateCourseGradesMP3(int courseId, int studentId, double average) {
         try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP3)) {
+             PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ROSTER)) {
 
-               conn.setAutoCommit(false);
-               stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
+            stmt.setInt(1, assignmentId);
+            stmt.setInt(2, courseId);
 
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               System.out.println("\nsql error\n");
-               return -1;
-           }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    roster.add(new RosterEntry(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return roster;
     }
-	public static int updateCourseGradesMP4(int courseId, int studentId, double average) {
+
+    /**
+     * Retrieves a student's grades on the assignments of a course in a marking period.
+     *
+     * @param studentId the student
+     * @param courseId the course
+     * @param markingPeriod the marking period (5 and 6 are the midterm and final exams)
+     * @return every assignment with the student's grade, in the order they were created
+     */
+
+    public static ArrayList<AssignmentGrade> getAssignmentGrades(int studentId, int courseId, int markingPeriod) {
+        ArrayList<AssignmentGrade> grades = new ArrayList<AssignmentGrade>();
+
         try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MP4)) {
+             PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_ASSIGNMENT_GRADES)) {
 
-               conn.setAutoCommit(false);
-               stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
+            stmt.setInt(1, studentId);
+            stmt.setInt(2, courseId);
+            stmt.setInt(3, markingPeriod);
 
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               System.out.println("\nsql error\n");
-               return -1;
-           }
-    }
-
-    public static int updateCourseGradesMidterm(int courseId, int studentId, double average) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_MIDTERM)) {
-
-               conn.setAutoCommit(false);
-               stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               System.out.println("\nsql error\n");
-               return -1;
-           }
-    }
-    
-    public static int updateCourseGradesFinal(int courseId, int studentId, double average) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_FINAL)) {
-
-               conn.setAutoCommit(false);
-               stmt.setDouble(1, average);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
-
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               System.out.println("\nsql error\n");
-               return -1;
-           }
-    }
-    
-    public static Object getMP1Grade(int courseId, int studentId) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP1_GRADE)) {
-
-            stmt.setInt(1, courseId);
-            stmt.setInt(2, studentId);
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("mp1");
+                while (rs.next()) {
+                    grades.add(new AssignmentGrade(rs));
                 }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
 
-        return -1;
+        return grades;
     }
-    
-    public static Object getMP2Grade(int courseId, int studentId) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP2_GRADE)) {
 
-            stmt.setInt(1, courseId);
-            stmt.setInt(2, studentId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("mp2");
+    /**
+     * Saves a student's grade on an assignment, inserting it or replacing the existing one
+     * with a single statement. If the grade changed, the student's averages, course grade,
+     * and GPA are recomputed in the same transaction, so either all of them are written or
+     * none of them is.
+     *
+     * @param courseId the course
+     * @param assignmentId the assignment
+     * @param studentId the student
+     * @param pointsEarned the points earned
+     * @param pointsPossible the assignment's point value
+     * @return 1 if the grade was inserted or changed; 0 if it was unchanged; -1 on error
+     */
+
+    public static int saveAssignmentGrade(int courseId, int assignmentId, int studentId, double pointsEarned, int pointsPossible) {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                int saved;
+
+                try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPSERT_ASSIGNMENT_GRADE)) {
+                    stmt.setInt(1, courseId);
+                    stmt.setInt(2, assignmentId);
+                    stmt.setInt(3, studentId);
+                    stmt.setDouble(4, pointsEarned);
+                    stmt.setInt(5, pointsPossible);
+
+                    saved = stmt.executeUpdate() == 1 ? 1 : 0;
                 }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
 
-        return -1;
-    }
+                if (saved == 1 && recomputeCourseGrade(conn, courseId, studentId) != 1) {
+                    conn.rollback();
+                    gpaEngine.forget(studentId);
 
-    public static Object getMP3Grade(int courseId, int studentId) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP3_GRADE)) {
+                    return -1;
+                }
 
-            stmt.setInt(1, courseId);
-            stmt.setInt(2, studentId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("mp3");
+                conn.commit();
+
+                if (saved == 1) {
+                    gradeVersion.incrementAndGet();
                 }
+
+                return saved;
+            } catch (SQLException e) {
+                conn.rollback();
+                gpaEngine.forget(studentId);
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
-        }
 
-        return -1;
+            return -1;
+        }
     }
 
-    public static Object getMP4Grade(int courseId, int studentId) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MP4_GRADE)) {
+    /**
+     * Enters the grades of many students on one assignment. The grades are written with
+     * JDBC batching, and the affected students' averages, course grades, and GPAs are
+     * recomputed once, all in a single transaction. Existing grades are replaced; students
+     * whose grade did not change are not recomputed.
+     *
+     * @param courseId the course
+     * @param assignmentId the assignment
+     * @param pointsPossible the assignment's point value
+     * @param grades the student grades
+     * @return the number of grades entered; -1 if nothing was saved
+     */
 
-            stmt.setInt(1, courseId);
-            stmt.setInt(2, studentId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("mp4");
+    public static int enterAssignmentGrades(int courseId, int assignmentId, int pointsPossible, ArrayList<GradeEntry> grades) {
+        IntList studentIds = new IntList();     // students whose grade actually changed
+        IntIntMap changed = new IntIntMap(grades.size());
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPSERT_ASSIGNMENT_GRADE)) {
+                    for (GradeEntry grade : grades) {
+                        stmt.setInt(1, courseId);
+                        stmt.setInt(2, assignmentId);
+                        stmt.setInt(3, grade.getStudentId());
+                        stmt.setDouble(4, grade.getPointsEarned());
+                        stmt.setInt(5, pointsPossible);
+                        stmt.addBatch();
+                    }
+
+                    int[] counts = stmt.executeBatch();
+
+                    for (int i = 0; i < counts.length; i++) {
+                        int studentId = grades.get(i).getStudentId();
+
+                        if (counts[i] > 0 && !changed.containsKey(studentId)) {
+                            changed.put(studentId, 1);
+                            studentIds.add(studentId);
+                        }
+                    }
                 }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
 
-        return -1;
-    }
+                if (studentIds.isEmpty()) {
+                    conn.commit();
 
-    public static Object getMidtermGrade(int courseId, int studentId) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MIDTERM_GRADE)) {
+                    return grades.size();
+                }
 
-            stmt.setInt(1, courseId);
-            stmt.setInt(2, studentId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("midterm_exam");
+                try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.RECOMPUTE_STUDENT_AVERAGES)) {
+                    for (int i = 0; i < studentIds.size(); i++) {
+                        stmt.setInt(1, courseId);
+                        stmt.setInt(2, studentIds.get(i));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
                 }
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
 
-        return -1;
-    }
-    
-    public static Object getFinalGrade(int courseId, int studentId) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_FINAL_GRADE)) {
+                updateCourseGrades(conn, courseId, studentIds);
+                conn.commit();
+                gradeVersion.incrementAndGet();
 
-            stmt.setInt(1, courseId);
-            stmt.setInt(2, studentId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getObject("final_exam");
+                return grades.size();
+            } catch (SQLException e) {
+                conn.rollback();
+
+                for (int i = 0; i < studentIds.size(); i++) {
+                    gpaEngine.forget(studentIds.get(i));
                 }
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
-        }
 
-        return -1;
+            return -1;
+        }
     }
-    
-    public static int updateCourseGrade(int courseId, int studentId, double grade) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_GRADE)) {
 
-               conn.setAutoCommit(false);
-               stmt.setDouble(1, grade);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, studentId);
+    /**
+     * Writes a batch of gradebook changes in a single transaction: new assignments, then
+     * grades, then password resets, each sent as a JDBC batch. Averages, course grades, and
+     * GPAs are recomputed once per course for the students whose grades changed. If any
+     * change fails (e.g. a password reset names an unknown user), nothing is written.
+     *
+     * @param batch the queued changes
+     * @return 1 if the batch was written; -1 if it was rolled back
+     */
 
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
-    }
-    
-    public static ArrayList<Object> getCourseGrades(int studentId) {
-        ArrayList<Object> courseGrades = new ArrayList<Object>();
-         try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ALL_GRADES_FOR_STUDENT)) {
-
-                 stmt.setInt(1, studentId);
-                     try (ResultSet rs = stmt.executeQuery()) {
-                         while (rs.next()) {
-                             String result = rs.getString("grade");
-                             if (result == null) {
-                               courseGrades.add(-1.0);
-                             } else {
-                              courseGrades.add(rs.getObject("grade"));
-                             }
-                         }
-                     }
-
-                 return courseGrades;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-         return courseGrades;
-     }
-    
-    public static ArrayList<Integer> getCourseIds(int studentId) {
-        ArrayList<Integer> courseIds = new ArrayList<Integer>();
-         try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID_BY_STUDENT)) {
-
-                 stmt.setInt(1, studentId);
-                     try (ResultSet rs = stmt.executeQuery()) {
-                         while (rs.next()) {
-                             courseIds.add(rs.getInt("course_id"));
-                         }
-                     }
-
-                 return courseIds;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-         return courseIds;
-     }
-    
-    public static ArrayList<Integer> getCreditHours(ArrayList<Integer> courseIds) {
-        ArrayList<Integer> creditHours = new ArrayList<Integer>();
-         try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_CREDIT_HOURS)) {
-
-             for(int i = 0; i < courseIds.size(); i++) {
-                 stmt.setInt(1, courseIds.get(i));
-                 try (ResultSet rs = stmt.executeQuery()) {
-                     while (rs.next()) {
-                         creditHours.add(rs.getInt("credit_hours"));
-                     }
-                 }
-             }
-             return creditHours;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-         return creditHours;
-     }
+    public static int executeBatch(WriteBatch batch) {
+        IntList courseIds = new IntList();                          // courses with changed grades, in order
+        ArrayList<IntList> studentIds = new ArrayList<IntList>();   // changed students, per course
+        IntIntMap courseIndex = new IntIntMap();
+        LongDoubleMap changed = new LongDoubleMap();
 
-    public static int updateGPA(double gpa, int studentId) {
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_GPA)) {
+        if (batch.isEmpty()) {
+            return 1;
+        }
 
+        try (Connection conn = getConnection()) {
             conn.setAutoCommit(false);
-            stmt.setDouble(1, gpa);
-            stmt.setInt(2, studentId);
 
-            if (stmt.executeUpdate() == 1) {
+            try {
+                if (!batch.assignments.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT)) {
+                        for (WriteBatch.PendingAssignment assignment : batch.assignments) {
+                            stmt.setInt(1, assignment.courseId);
+                            stmt.setInt(2, assignment.assignmentId);
+                            stmt.setInt(3, assignment.markingPeriod);
+                            stmt.setInt(4, assignment.markingPeriod == 5 ? 1 : 0);
+                            stmt.setInt(5, assignment.markingPeriod == 6 ? 1 : 0);
+                            stmt.setString(6, assignment.title);
+                            stmt.setInt(7, assignment.pointValue);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+
+                if (!batch.grades.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPSERT_ASSIGNMENT_GRADE)) {
+                        for (WriteBatch.PendingGrade grade : batch.grades) {
+                            stmt.setInt(1, grade.courseId);
+                            stmt.setInt(2, grade.assignmentId);
+                            stmt.setInt(3, grade.studentId);
+                            stmt.setDouble(4, grade.pointsEarned);
+                            stmt.setInt(5, grade.pointsPossible);
+                            stmt.addBatch();
+                        }
+
+                        int[] counts = stmt.executeBatch();
+
+                        for (int i = 0; i < counts.length; i++) {
+                            WriteBatch.PendingGrade grade = batch.grades.get(i);
+                            long key = (long) grade.courseId << 32 | grade.studentId;
+
+                            if (counts[i] > 0 && !changed.containsKey(key)) {
+                                changed.put(key, 1);
+
+                                if (!courseIndex.containsKey(grade.courseId)) {
+                                    courseIndex.put(grade.courseId, courseIds.size());
+                                    courseIds.add(grade.courseId);
+                                    studentIds.add(new IntList());
+                                }
+                                studentIds.get(courseIndex.get(grade.courseId, -1)).add(grade.studentId);
+                            }
+                        }
+                    }
+                }
+
+                if (!batch.passwordResets.isEmpty()) {
+                    try (PreparedStatement auth = conn.prepareStatement(QueryUtils.UPDATE_AUTH_SQL);
+                         PreparedStatement login = conn.prepareStatement(QueryUtils.RESET_LAST_LOGIN_SQL)) {
+
+                        for (String username : batch.passwordResets) {
+                            auth.setString(1, Utils.getHash(username));
+                            auth.setString(2, username);
+                            auth.addBatch();
+                            login.setString(1, username);
+                            login.addBatch();
+                        }
+
+                        int[] counts = auth.executeBatch();
+
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] == 0) {
+                                throw new SQLException("Unknown user: " + batch.passwordResets.get(i));
+                            }
+                        }
+                        login.executeBatch();
+                    }
+                }
+
+                if (!courseIds.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.RECOMPUTE_STUDENT_AVERAGES)) {
+                        for (int i = 0; i < courseIds.size(); i++) {
+                            for (int j = 0; j < studentIds.get(i).size(); j++) {
+                                stmt.setInt(1, courseIds.get(i));
+                                stmt.setInt(2, studentIds.get(i).get(j));
+                                stmt.addBatch();
+                            }
+                        }
+                        stmt.executeBatch();
+                    }
+
+                    for (int i = 0; i < courseIds.size(); i++) {
+                        updateCourseGrades(conn, courseIds.get(i), studentIds.get(i));
+                    }
+                }
+
                 conn.commit();
-                return 1;
-            } else {
+            } catch (SQLException e) {
                 conn.rollback();
-                return -1;
+
+                for (IntList students : studentIds) {
+                    for (int i = 0; i < students.size(); i++) {
+                        gpaEngine.forget(students.get(i));
+                    }
+                }
+                throw e;
             }
+
+            for (WriteBatch.PendingAssignment assignment : batch.assignments) {
+                assignments.invalidate(assignment.courseId, assignment.markingPeriod);
+            }
+            if (!courseIds.isEmpty()) {
+                gradeVersion.incrementAndGet();
+            }
+
+            return 1;
         } catch (SQLException e) {
             e.printStackTrace();
 
             return -1;
         }
     }
-    
-    public static void changePassword(String username, String password) {
-        try (Connection conn = getConnection()) {
-            int isChanged = updatePassword(conn, username, Utils.getHash(password));
-            if (isChanged != 1) {
-                System.err.println("Unable to successfully create password.");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+    /**
+     * Retrieves the statistics of the database connection pool.
+     *
+     * @return a snapshot of the pool statistics
+     */
+
+    public static ConnectionPool.Statistics getPoolStatistics() {
+        return getConnectionPool().getStatistics();
+    }
+
+    /**
+     * Retrieves the latency metrics of the PowerSchool methods and statements, which are
+     * also registered as the com.apcsa:type=QueryMetrics MBean.
+     *
+     * @return the query metrics
+     */
+
+    public static QueryMetrics getQueryMetrics() {
+        return QueryMetrics.getInstance();
+    }
+
+    /**
+     * @return the pragma profile applied to database connections
+     */
+
+    public static PragmaProfile getPragmaProfile() {
+        return profile;
+    }
+
+    /**
+     * Closes all pooled database connections.
+     */
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
     }
-    
-    private static int updatePassword(Connection conn, String username, String password) {
-        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_AUTH_SQL)) {
-            conn.setAutoCommit(false);
-            stmt.setString(1, password);
-            stmt.setString(2, username);
-            if (stmt.executeUpdate() == 1) {
-                conn.commit();
-                return 1;
-            } else {
-                conn.rollback();
-                return -1;
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Borrows a connection to the database from the connection pool. Closing the
+     * connection returns it to the pool. The time spent waiting is reported as a
+     * com.apcsa.ConnectionWait event while a flight recording is running.
+     *
+     * @return a database Connection object
+     * @throws SQLException
+     */
+
+    private static Connection getConnection() throws SQLException {
+        if (!FlightEvents.CONNECTION_WAIT.isEnabled()) {
+            return getConnectionPool().borrow();
+        }
+
+        FlightEvents.ConnectionWait event = new FlightEvents.ConnectionWait();
+        boolean failed = true;
+
+        event.begin();
+
+        try {
+            Connection conn = getConnectionPool().borrow();
+            failed = false;
+
+            return conn;
+        } finally {
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.failed = failed;
+                event.commit();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return -1;
         }
     }
-    
-    /**
-     * Resets a user's password.
-     * 
-     * @param username the user's username
+
+    /*
+     * Switches the pragma profile, discarding pooled connections opened under another one.
+     *
+     * @param pragmaProfile the new profile
      */
-    
-    public static boolean resetPassword(String username) {
-    	try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_AUTH_SQL)) {
 
-    		conn.setAutoCommit(false);
-            stmt.setString(1, Utils.getHash(username));
-            stmt.setString(2, username);
+    private static synchronized void configure(PragmaProfile pragmaProfile) {
+        if (pragmaProfile != profile) {
+            shutdown();
+            profile = pragmaProfile;
+        }
+    }
 
-            if (stmt.executeUpdate() == 1) {
-                conn.commit();
-                return true;
-            } else {
-                conn.rollback();
-               return false;
+    /*
+     * Lazily creates the connection pool. Pool sizing, timeouts, and the per-connection
+     * statement cache size can be overridden with the powerschool.pool.* system properties.
+     * Statements through the pool that take longer than powerschool.slowQueryMillis (100 ms
+     * by default; negative disables it) are written to powerschool.slowQueryLog, which is
+     * slow-queries.log next to the database unless overridden.
+     *
+     * @return the connection pool
+     */
 
-            }
-           } catch (SQLException e) {
-               e.printStackTrace();
-               return false;
-           }
+    private static synchronized ConnectionPool getConnectionPool() {
+        if (pool == null) {
+            QueryMetrics.getInstance().setSlowQueryLog(slowQueries);
+
+            pool = new ConnectionPool(PROTOCOL + DATABASE_URL,
+                Integer.getInteger("powerschool.pool.minSize", 1),
+                Integer.getInteger("powerschool.pool.maxSize", 4),
+                Long.getLong("powerschool.pool.idleTimeout", 60000),
+                Long.getLong("powerschool.pool.borrowTimeout", 5000),
+                Integer.getInteger("powerschool.pool.validationTimeout", 2),
+                Integer.getInteger("powerschool.pool.statementCacheSize", 100),
+                profile::apply);
+        }
+
+        return pool;
     }
-    
-    public static int resetLastLogin(String username) {
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.RESET_LAST_LOGIN_SQL)){
 
-            conn.setAutoCommit(false);
-            stmt.setString(1, username);
+    /*
+     * Recomputes a student's marking period and exam averages in a course from their
+     * assignment grades, within the caller's transaction. All six averages are written in
+     * one statement; periods without any graded assignments are cleared.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @param studentId the student
+     * @return the number of affected rows
+     * @throws SQLException
+     */
+
+    private static int recomputeMarkingPeriodAverages(Connection conn, int courseId, int studentId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.RECOMPUTE_STUDENT_AVERAGES)) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, studentId);
+
+            return stmt.executeUpdate();
+        }
+    }
+
+    /*
+     * Recomputes the grades of every student in a course, within the caller's transaction:
+     * the marking period and exam averages with one statement, then the course grades, GPAs
+     * and class ranks as updateCourseGrades does for a batch.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @throws SQLException
+     */
+
+    private static void recomputeCourseGrades(Connection conn, int courseId) throws SQLException {
+        IntList studentIds = new IntList();
 
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.RECOMPUTE_COURSE_AVERAGES)) {
+            stmt.setInt(1, courseId);
             stmt.executeUpdate();
-                conn.commit();
-                return 1;
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }
 
-            return -1;
+        try (PreparedStatement select = conn.prepareStatement(QueryUtils.GET_COURSE_MARKING_PERIOD_GRADES)) {
+            select.setInt(1, courseId);
+
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    studentIds.add(rs.getInt("student_id"));
+                }
+            }
         }
+
+        updateCourseGrades(conn, courseId, studentIds);
     }
-    
-    public static int getNumberOfCourses() {
-    	try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_NUMBER_OF_COURSES)) {
 
-               try (ResultSet rs = stmt.executeQuery()) {
-                   if (rs.next()) {
-                       return rs.getInt(1);
-                   }
-               }
-           } catch (SQLException e) {
-               e.printStackTrace();
-           }
+    /*
+     * Recomputes a student's grades in a course after an assignment grade changes, within
+     * the caller's transaction: the marking period and exam averages, the course grade, and
+     * the student's GPA.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @param studentId the student
+     * @return 1 if the grades were recomputed; -1 otherwise
+     * @throws SQLException
+     */
 
-           return 1;
+    private static int recomputeCourseGrade(Connection conn, int courseId, int studentId) throws SQLException {
+        if (recomputeMarkingPeriodAverages(conn, courseId, studentId) != 1) {
+            return -1;
+        }
+
+        return updateCourseGrade(conn, courseId, studentId, computeCourseGrade(conn, courseId, studentId));
     }
-    
-    public static String getCourseNumber(int i) {
-    	try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_NUMBER)) {
 
-    			stmt.setString(1, String.valueOf(i));
-               try (ResultSet rs = stmt.executeQuery()) {
-                   if (rs.next()) {
-                       return rs.getString("course_no");
-                   }
-               }
-           } catch (SQLException e) {
-               e.printStackTrace();
-           }
+    /*
+     * Computes a course grade from the stored marking period and exam averages.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @param studentId the student
+     * @return the course grade, or -1 if nothing has been graded
+     * @throws SQLException
+     */
 
-           return "e";
-    }
-    
-    public static int getNumberOfAssignemnts() {
-    	try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_NUMBER_OF_ASSIGNMENTS)) {
+    private static double computeCourseGrade(Connection conn, int courseId, int studentId) throws SQLException {
+        double[] scores = new double[GradeKernel.SLOTS];
+        int mask = 0;
 
-               try (ResultSet rs = stmt.executeQuery()) {
-                   if (rs.next()) {
-                       return rs.getInt(1);
-                   }
-               }
-           } catch (SQLException e) {
-               e.printStackTrace();
-           }
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_MARKING_PERIOD_GRADES)) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, studentId);
 
-           return 1;
-    }
-    
-    public static int getStudentIdByUserId(User activeUser) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_ID_BY_USER_ID)) {
-     			
-    			stmt.setInt(1,  activeUser.getUserId());
-    			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					return rs.getInt("student_id");
-     				}
-     			}	
-     		return -1;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return -1;
-    }
-    
-    public static ArrayList<String> getStudentId(String courseId) {
-    	ArrayList<String> studentIds = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_ID_FROM_COURSE_ID)) {
-     			
-    			stmt.setString(1, courseId);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					studentIds.add(rs.getString("student_id"));
-     				}
-     			}	
-     		return studentIds;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return studentIds;
-    }
-    
-    public static ArrayList<String> getStudentsByStudentId(String studentIds) {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_BY_STUDENT_ID)) {
-     			
-    			stmt.setString(1,  studentIds);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   students.add(rs.getString("first_name"));
-                  	   students.add(rs.getString("last_name"));
-                  	   students.add(rs.getString("gpa"));
-     				}
-     			}	
-     		return students;
-        } catch (SQLException e) {
-            e.printStackTrace();
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    mask = readScores(rs, 1, scores, 0);
+                }
+            }
         }
-     	return students;
+
+        return GradeKernel.grade(scores, 0, mask);
     }
-    
-    public static ArrayList<String> getStudentsFirstNames(String studentIds) {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_FIRST_NAMES)) {
-     			
-    			stmt.setString(1,  studentIds);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   students.add(rs.getString("first_name"));
-     				}
-     			}	
-     		return students;
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+    /*
+     * Writes a course grade within the caller's transaction, and the resulting GPA and class
+     * ranks if the GPA changed.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @param studentId the student
+     * @param grade the new course grade, or -1 if nothing has been graded
+     * @return 1 if the rows were updated; -1 otherwise
+     * @throws SQLException
+     */
+
+    private static int updateCourseGrade(Connection conn, int courseId, int studentId, double grade) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_COURSE_GRADE)) {
+            if (grade < 0) {
+                stmt.setNull(1, Types.REAL);
+            } else {
+                stmt.setDouble(1, grade);
+            }
+            stmt.setInt(2, courseId);
+            stmt.setInt(3, studentId);
+
+            if (stmt.executeUpdate() != 1) {
+                return -1;
+            }
         }
-     	return students;
-    }
-    
-    public static ArrayList<String> getStudentsLastNames(String studentIds) {
-    	ArrayList<String> students = new ArrayList<String>();
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_LAST_NAMES)) {
-     			
-    			stmt.setString(1,  studentIds);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-                  	   students.add(rs.getString("last_name"));
-     				}
-     			}	
-     		return students;
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+        double previous;
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENTS_BY_STUDENT_ID)) {
+            stmt.setInt(1, studentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                previous = rs.getDouble("gpa");
+            }
         }
-     	return students;
-    }
 
-    public static int assignmentGradesRows() {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.ROWS_IN_ASSIGNMENT_GRADES)) {
-                  
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("count(*)");
+        double gpa = gpaEngine.apply(conn, studentId, courseId, grade);
+
+        if (gpa != previous) {
+            try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_GPA)) {
+                stmt.setDouble(1, gpa);
+                stmt.setInt(2, studentId);
+
+                if (stmt.executeUpdate() != 1) {
+                    return -1;
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+            ranks.move(conn, studentId, previous, gpa);
         }
 
         return 1;
     }
-    
-    public static int addAssignmentGrade(int courseId, int assignmentId, int studentId, double pointsEarned, int pointsPossible) {
-    	
-    	
-    	
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.ADD_ASSIGNMENT_GRADE)) {
-               
-    		   conn.setAutoCommit(false);
-               stmt.setInt(1, courseId);
-               stmt.setInt(2, assignmentId);
-               stmt.setInt(3, studentId);
-               stmt.setDouble(4, pointsEarned);
-               stmt.setInt(5, pointsPossible);
-               
-               stmt.executeUpdate();
-                   conn.commit();
-                   return 1;
-               
-           } catch (SQLException e) {
-//        	   e.printStackTrace();
-//               System.out.println("problem with add grade!");
-        	   return -1;
-           }
-    }
-    
-    public static int updateAssignmentGrade(int courseId, int assignmentId, int studentId, double pointsEarned) {
-    	try (Connection conn = getConnection();
-           	 PreparedStatement stmt = conn.prepareStatement(QueryUtils.UPDATE_ASSIGNMENT_GRADE)) {
-               
-    		   conn.setAutoCommit(false);
-    		   stmt.setDouble(1, pointsEarned);
-               stmt.setInt(2, courseId);
-               stmt.setInt(3, assignmentId);
-               stmt.setInt(4, studentId);
 
-               if (stmt.executeUpdate() == 1) {
-                   conn.commit();
-                   return 1;
-               } else {
-                   conn.rollback();
-                   return -1;
-               }
-           } catch (SQLException e) {
-               return -1;
-           }
-    }
-    
-    public static ArrayList<Integer> getCourseIdWithStudentId(int studentId) {
-    	ArrayList<Integer> resultList = new ArrayList<Integer>();
-    	try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID_WITH_STUDENT_ID)) {
-    		stmt.setInt(1, studentId);
-
-    		try (ResultSet rs = stmt.executeQuery()) {
-        	   while (rs.next()) {
-        		   resultList.add(rs.getInt("course_id"));
-        	   }
-        	   return resultList;
-        	   
-    		}
-    	} catch (SQLException e) {
-    		e.printStackTrace();
+    /*
+     * Writes the course grades of several students in a course within the caller's
+     * transaction, then the GPAs of those whose GPA changed, each as one JDBC batch. The
+     * grade levels of the course are then re-ranked once if any GPA changed.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @param studentIds the students whose averages changed
+     * @throws SQLException
+     */
+
+    private static void updateCourseGrades(Connection conn, int courseId, IntList studentIds) throws SQLException {
+        IntIntMap changed = new IntIntMap(studentIds.size());
+        int[] ids = new int[studentIds.size()];
+        int[] masks = new int[studentIds.size()];
+        double[] scores = new double[studentIds.size() * GradeKernel.SLOTS];
+        double[] grades = new double[studentIds.size()];
+        double[] gpas = new double[studentIds.size()];
+        int count = 0;
+
+        for (int i = 0; i < studentIds.size(); i++) {
+            changed.put(studentIds.get(i), 1);
         }
-    	return resultList;
-    }
-    
-    public static int getCourseIdFromCourseNo(String courseNo){
-    	try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID_FROM_DEPARTMENT_ID)) {
 
-               stmt.setString(1, courseNo);
+        // gather the averages of every changed student, then grade them in one call
 
-               try (ResultSet rs = stmt.executeQuery()) {
-                   if (rs.next()) {
-                       return rs.getInt("course_id");
-                   }
-               }
-           } catch (SQLException e) {
-               e.printStackTrace();
-           }
+        try (PreparedStatement select = conn.prepareStatement(QueryUtils.GET_COURSE_MARKING_PERIOD_GRADES)) {
+            select.setInt(1, courseId);
 
-           return 1;
-    }
-    
-    public static String getCourseIdFromCourseNo2(String courseNo) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_ID_FROM_COURSE_NO)) {
-     			stmt.setString(1,  courseNo);
-     			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					return rs.getString("course_id");
-     				}
-     			}	
-     		return "no";
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return "no";
-    }
-    
-    public static ArrayList<String> getCourseName(User activeUser, ArrayList<Integer> courseIds) {
-    	ArrayList<String> courses = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_NAME)) {
-     			for(int i = 0; i <= courseIds.size()-1; i++) {
-     				stmt.setInt(1, courseIds.get(i));
-     				
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("title");
-                  		   courses.add(result);
-     					}
-     				}
-     			}
-     			return courses;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return courses;
-     }
-    
-    public static ArrayList<String> getCourseNumberWithCourseId(User activeUser, ArrayList<Integer> courseIds) {
-    	ArrayList<String> courses = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_NUMBER_WITH_COURSE_ID)) {
-     			for(int i = 0; i <= courseIds.size()-1; i++) {
-     				stmt.setInt(1, courseIds.get(i));
-     				
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("course_no");
-                  		   courses.add(result);
-     					}
-     				}
-     			}
-     			return courses;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return courses;
-     }
-    
-    public static ArrayList<String> getCourseGrade(int studentId, ArrayList<Integer> courseIds) {
-    	ArrayList<String> courseGrades = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_COURSE_GRADE)) {
-     			
-     			for(int i = 0; i < courseIds.size(); i++) {
-     				stmt.setInt(1, courseIds.get(i));
-     				stmt.setInt(2, studentId);
-     				
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		   String result = rs.getString("grade");
-
-                  		   if(result == null) {
-                  			 courseGrades.add("--");
-                  		   }else {
-                  			 courseGrades.add(result);
-                  		   }
-     					}
-     				}
-     			}
-     			return courseGrades;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return courseGrades;
-     }
-    
-    public static ArrayList<String> getAssignmentTitle(int courseId, int markingPeriod) {
-    	ArrayList<String> title = new ArrayList<String>();
-     	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_TITLE)) {
-     			
-     				stmt.setInt(1, courseId);
-     				stmt.setInt(2, markingPeriod);
-     				
-     				try (ResultSet rs = stmt.executeQuery()) {
-     					while (rs.next()) {
-                  		 title.add(rs.getString("title"));
-     					}
-     				}
-     			return title;
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-     	return title;
-     }
-    
-    public static int getAssignmentIdFromTitlePlus(String title, int courseId, int markingPeriod) {
-    	try (Connection conn = getConnection();
-     			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_ASSIGNMENT_ID_FROM_TITLE_PLUS)) {
-     			
-    			stmt.setString(1,  title);
-    			stmt.setInt(2,  courseId);
-    			stmt.setInt(3,  markingPeriod);
-    			try (ResultSet rs = stmt.executeQuery()) {
-     				while (rs.next()) {
-     					return rs.getInt("assignment_id");
-     				}
-     			}	
-     		return -1;
-        } catch (SQLException e) {
-            e.printStackTrace();
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next() && count < ids.length) {
+                    int studentId = rs.getInt("student_id");
+
+                    if (changed.containsKey(studentId)) {
+                        ids[count] = studentId;
+                        masks[count] = readScores(rs, 2, scores, count * GradeKernel.SLOTS);
+                        gpas[count] = rs.getDouble("gpa");
+                        count++;
+                    }
+                }
+            }
         }
-     	return -1;
-    }
-    
-    public static int previousGrade(int courseId, int assignmentId, int studentId) {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.PREVIOUS_GRADE)) {
-                  
-    		stmt.setInt(1, courseId);
-    		stmt.setInt(2, assignmentId);
-    		stmt.setInt(3, studentId);
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("points_earned");
+
+        GradeKernel.grades(scores, masks, grades, count);
+
+        try (PreparedStatement update = conn.prepareStatement(QueryUtils.UPDATE_COURSE_GRADE)) {
+            for (int i = 0; i < count; i++) {
+                if (grades[i] < 0) {
+                    update.setNull(1, Types.REAL);
+                } else {
+                    update.setDouble(1, grades[i]);
                 }
+                update.setInt(2, courseId);
+                update.setInt(3, ids[i]);
+                update.addBatch();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+            update.executeBatch();
         }
 
-        return -1;
-    }
-    
-    public static int getPointValue(String title) {
-    	try (Connection conn = getConnection();
-    			PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_POINT_VALUE)) {
-                  
-    		stmt.setString(1, title);
-    		
-    		try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("point_value");
+        int moved = 0;
+        int last = -1;
+        double lastGpa = 0;
+
+        try (PreparedStatement update = conn.prepareStatement(QueryUtils.UPDATE_GPA)) {
+            gpaEngine.preload(conn, courseId);
+
+            for (int i = 0; i < count; i++) {
+                double gpa = gpaEngine.apply(conn, ids[i], courseId, grades[i]);
+
+                if (gpa != gpas[i]) {
+                    update.setDouble(1, gpa);
+                    update.setInt(2, ids[i]);
+                    update.addBatch();
+
+                    moved++;
+                    last = i;
+                    lastGpa = gpa;
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+            if (moved > 0) {
+                update.executeBatch();
+            }
         }
 
-        return 1;
+        // one move is cheapest shifted in place; more re-rank each grade level once
+
+        if (moved == 1) {
+            ranks.move(conn, ids[last], gpas[last], lastGpa);
+        } else if (moved > 1) {
+            ranks.rankCourse(conn, courseId);
+        }
     }
-    
-    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
 
     /*
-     * Establishes a connection to the database.
+     * Reads the MP1, MP2, midterm, MP3, MP4, and final averages from consecutive columns of
+     * the current row.
      *
-     * @return a database Connection object
+     * @param rs the result set
+     * @param column the column holding MP1
+     * @param scores receives the averages
+     * @param offset the index in scores to receive MP1
+     * @return the presence mask of the averages
      * @throws SQLException
      */
 
-    private static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(PROTOCOL + DATABASE_URL);
+    private static int readScores(ResultSet rs, int column, double[] scores, int offset) throws SQLException {
+        int mask = 0;
+
+        for (int i = 0; i < GradeKernel.SLOTS; i++) {
+            scores[offset + i] = rs.getDouble(column + i);
+
+            if (!rs.wasNull()) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
     }
 
     /*
@@ -1502,31 +1444,86 @@ public class PowerSchool {
     }
 
     /*
-     * Builds the database. Executes a SQL script from a configuration file to
-     * create the tables, setup the primary and foreign keys, and load sample data.
+     * Creates any missing secondary indexes and refreshes planner statistics. Unless
+     * disabled with -Dpowerschool.verifyQueryPlans=false, also warns about hot queries
+     * that the query planner would answer with a full scan.
      */
 
-    private static void reset() {
+    private static void createIndexes() {
         try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             BufferedReader br = new BufferedReader(new FileReader(new File("config/setup.sql")))) {
-
-            String line;
-            StringBuffer sql = new StringBuffer();
+             Statement stmt = conn.createStatement()) {
 
-            // read the configuration file line-by-line to get SQL commands
+            for (String sql : QueryUtils.CREATE_INDEXES_SQL) {
+                stmt.executeUpdate(sql);
+            }
+            stmt.execute(QueryUtils.OPTIMIZE_SQL);
 
-            while ((line = br.readLine()) != null) {
-                sql.append(line);
+            if (Boolean.parseBoolean(System.getProperty("powerschool.verifyQueryPlans", "true"))) {
+                for (String problem : QueryPlanVerifier.verify(conn)) {
+                    System.err.println("Warning: Query does not use an index (" + problem + ").");
+                }
             }
+        } catch (SQLException e) {
+            System.err.println("Error: Unable to create database indexes.");
+            e.printStackTrace();
+        }
+    }
 
-            // execute SQL commands one-by-one
+    /*
+     * Brings the stored class ranks of every grade level up to date, e.g. for databases
+     * whose ranks were never written.
+     */
 
-            for (String command : sql.toString().split(";")) {
-                if (!command.strip().isEmpty()) {
-                    stmt.executeUpdate(command);
-                }
+    private static void rankStudents() {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                ranks.rankAll(conn);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
+        } catch (SQLException e) {
+            System.err.println("Error: Unable to rank students.");
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * Adds the sequences table to databases created before it existed, and makes sure the
+     * assignment id sequence is ahead of every existing assignment.
+     */
+
+    private static void createSequences() {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.executeUpdate(QueryUtils.CREATE_SEQUENCES_SQL);
+            stmt.executeUpdate(QueryUtils.SEED_ASSIGNMENT_SEQUENCE);
+        } catch (SQLException e) {
+            System.err.println("Error: Unable to create id sequences.");
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * Builds the database. Executes a SQL script from a configuration file to
+     * create the tables, setup the primary and foreign keys, and load sample data.
+     * The script runs as a single batched transaction.
+     */
+
+    private static void reset() {
+        try (Connection conn = getConnection();
+             BufferedReader br = new BufferedReader(new FileReader(new File(SETUP_SCRIPT)))) {
+
+            new SqlScriptLoader(SCRIPT_BATCH_SIZE).load(conn, br);
+            gpaEngine.clear();
+            assignmentIds.clear();
+            catalog = null;
+            assignments.clear();
+            gradeVersion.incrementAndGet();
         } catch (FileNotFoundException e) {
             System.err.println("Error: Unable to load SQL configuration file.");
             e.printStackTrace();
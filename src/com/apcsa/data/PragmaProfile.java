@@ -0,0 +1,101 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public enum PragmaProfile {
+
+    /*
+     * Every commit is synced to disk before it returns. Survives power loss at the cost of
+     * an fsync per transaction.
+     */
+
+    DURABLE("WAL", "FULL", "-8000", "0", "DEFAULT", "5000"),
+
+    /*
+     * Commits are synced at WAL checkpoints only. Survives application crashes; a power loss
+     * can roll back the most recent transactions.
+     */
+
+    FAST("WAL", "NORMAL", "-65536", "268435456", "MEMORY", "5000");
+
+    private static final String PROPERTY_PREFIX = "powerschool.pragma.";
+
+    private final Map<String, String> pragmas = new LinkedHashMap<String, String>();
+
+    /*
+     * Creates a profile. The journal mode is listed first because it has to be switched
+     * before anything else touches the database.
+     */
+
+    private PragmaProfile(String journalMode, String synchronous, String cacheSize,
+            String mmapSize, String tempStore, String busyTimeout) {
+
+        pragmas.put("journal_mode", journalMode);
+        pragmas.put("synchronous", synchronous);
+        pragmas.put("cache_size", cacheSize);
+        pragmas.put("mmap_size", mmapSize);
+        pragmas.put("temp_store", tempStore);
+        pragmas.put("busy_timeout", busyTimeout);
+    }
+
+    /**
+     * Retrieves the profile's pragma values. Any value can be overridden with a system
+     * property named after the pragma, e.g. -Dpowerschool.pragma.cache_size=-20000.
+     *
+     * @return the pragma names and values, in the order they are applied
+     */
+
+    public Map<String, String> getPragmas() {
+        Map<String, String> effective = new LinkedHashMap<String, String>();
+
+        for (Map.Entry<String, String> pragma : pragmas.entrySet()) {
+            effective.put(pragma.getKey(), System.getProperty(PROPERTY_PREFIX + pragma.getKey(), pragma.getValue()));
+        }
+
+        return effective;
+    }
+
+    /**
+     * Applies the profile to a newly opened connection.
+     *
+     * @param conn the database connection
+     * @throws SQLException
+     */
+
+    public void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> pragma : getPragmas().entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        }
+    }
+
+    /**
+     * Looks up a profile by name, ignoring case.
+     *
+     * @param name the profile name (durable or fast)
+     * @return the matching profile
+     * @throws IllegalArgumentException if no profile has that name; the message lists the
+     *         valid names
+     */
+
+    public static PragmaProfile fromName(String name) {
+        for (PragmaProfile profile : values()) {
+            if (profile.name().equalsIgnoreCase(name.trim())) {
+                return profile;
+            }
+        }
+
+        StringBuilder names = new StringBuilder();
+
+        for (PragmaProfile profile : values()) {
+            names.append(names.length() == 0 ? "" : ", ").append(profile.name().toLowerCase());
+        }
+
+        throw new IllegalArgumentException("Unknown database profile: " + name + " (expected one of " + names + ").");
+    }
+}
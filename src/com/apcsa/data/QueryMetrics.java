@@ -0,0 +1,689 @@
+package com.apcsa.data;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import com.apcsa.util.LatencyHistogram;
+
+/**
+ * Records the latency and error count of every SQL statement executed through the
+ * connection pool, and of a sample of PowerSchool methods. Statements are named after their
+ * QueryUtils constant. A sampled method is measured from the moment it borrows a connection
+ * until it hands the connection back, and is charged with the errors of the statements it
+ * executed; one borrow in powerschool.metrics.sampleEvery (16) is sampled, so the stack is
+ * only walked to name the method for those. A method's count, errors and total are scaled
+ * up by the sampling rate and marked with ~ as estimates; its percentiles are not scaled.
+ *
+ * Recording is lock-free and is enabled unless powerschool.metrics is false.
+ */
+
+public class QueryMetrics implements QueryMetricsMBean {
+
+    public static final String OBJECT_NAME = "com.apcsa:type=QueryMetrics";
+
+    private static final int MAX_STATEMENTS = 512;
+    private static final int LABEL_LENGTH = 48;
+    private static final String OTHER = "(other)";
+    private static final String BATCH = "(batch)";
+
+    private static final QueryMetrics INSTANCE = new QueryMetrics();
+
+    private final Map<String, String> names = getStatementNames();
+    private final ConcurrentHashMap<String, Stat> statements = new ConcurrentHashMap<String, Stat>();
+    private final ConcurrentHashMap<String, Stat> methods = new ConcurrentHashMap<String, Stat>();
+    private final ConcurrentHashMap<String, Repeat> repeats = new ConcurrentHashMap<String, Repeat>();
+    private final StackWalker walker = StackWalker.getInstance();
+    private final int sampleEvery = Math.max(1, Integer.getInteger("powerschool.metrics.sampleEvery", 16));
+    private volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("powerschool.metrics"));
+    private volatile SlowQueryLog slowQueries;
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private QueryMetrics() {
+    }
+
+    /**
+     * @return the metrics shared by every connection
+     */
+
+    public static QueryMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String[] getMethodSummaries() {
+        return summarize(methods.values(), sampleEvery);
+    }
+
+    @Override
+    public String[] getStatementSummaries() {
+        return summarize(statements.values(), 1);
+    }
+
+    @Override
+    public String[] getRepeatedStatements() {
+        ArrayList<Repeat> sorted = new ArrayList<Repeat>(repeats.values());
+        sorted.sort((a, b) -> Long.compare(b.flagged.get(), a.flagged.get()));
+
+        String[] lines = new String[sorted.size()];
+
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = sorted.get(i).toString();
+        }
+
+        return lines;
+    }
+
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder();
+
+        report.append("Methods (latency in microseconds, 1 in ").append(sampleEvery).append(" borrows sampled, ~ estimated)\n");
+        for (String line : getMethodSummaries()) {
+            report.append("  ").append(line).append('\n');
+        }
+
+        report.append("\nStatements (latency in microseconds)\n");
+        for (String line : getStatementSummaries()) {
+            report.append("  ").append(line).append('\n');
+        }
+
+        String[] repeated = getRepeatedStatements();
+
+        if (repeated.length > 0) {
+            report.append("\nStatements repeated within one action\n");
+            for (String line : repeated) {
+                report.append("  ").append(line).append('\n');
+            }
+        }
+
+        SlowQueryLog log = slowQueries;
+
+        if (log != null && log.isEnabled()) {
+            report.append("\nSlow queries (over ").append(log.getThresholdMillis()).append(" ms): ")
+                .append(log.getLogged()).append(" logged to ").append(log.getFile())
+                .append(", ").append(log.getDropped()).append(" dropped\n");
+        }
+
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Stat stat : methods.values()) {
+            stat.reset();
+        }
+        for (Stat stat : statements.values()) {
+            stat.reset();
+        }
+        repeats.clear();
+    }
+
+    /**
+     * Sets the log that statements over its threshold are written to.
+     *
+     * @param slowQueries the slow query log, or null to stop logging
+     */
+
+    void setSlowQueryLog(SlowQueryLog slowQueries) {
+        this.slowQueries = slowQueries;
+    }
+
+    /////// RECORDING /////////////////////////////////////////////////////////////////////
+
+    /**
+     * Starts a borrow, sampling it for method latency, and counts the connection against
+     * the action traced on this thread, if any. The borrowing method is not looked up
+     * until something asks for it.
+     *
+     * @return the span to end when the connection is returned, or null if there is
+     *         nothing to record
+     */
+
+    Span begin() {
+        ActionTrace trace = ActionTrace.current();
+
+        if (!enabled && trace == null) {
+            return null;
+        }
+        if (trace != null) {
+            trace.borrowed();
+        }
+
+        boolean sampled = enabled && (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0);
+
+        return new Span(enabled, sampled, trace, System.nanoTime());
+    }
+
+    /**
+     * Invokes a statement method for a borrower, timing it if it executes SQL. Executions
+     * are also reported to the slow query log, the borrower's action trace, and (while a
+     * flight recording is running) as com.apcsa.Statement events. While any of them is on, a
+     * query's results are wrapped to count the rows the caller reads and the time spent
+     * reading them; the query is recorded, logged and its event committed once they are
+     * closed (see getQuery).
+     *
+     * @param span the borrower's span, or null if there is nothing to record
+     * @param sql the SQL text, or null if it is passed to the method
+     * @param parameters the bound parameter values by index (from 1), or null
+     * @param target the physical statement
+     * @param method the invoked method
+     * @param args the method arguments
+     * @return the result of the method
+     * @throws Throwable whatever the method throws
+     */
+
+    Object execute(Span span, String sql, Object[] parameters, Object target, Method method, Object[] args)
+            throws Throwable {
+
+        if (!method.getName().startsWith("execute")) {
+            return invoke(target, method, args);
+        }
+
+        SlowQueryLog log = slowQueries;
+        boolean recording = FlightEvents.STATEMENT.isEnabled();
+
+        if (log != null && !log.isEnabled()) {
+            log = null;
+        }
+
+        if (span == null && log == null && !recording) {
+            return invoke(target, method, args);
+        }
+
+        if (sql == null) {
+            sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : BATCH;
+        }
+
+        Stat stat = getStatement(sql);
+        boolean timed = span != null && span.timed;
+        FlightEvents.Statement event = recording ? new FlightEvents.Statement() : null;
+
+        if (span != null && span.trace != null) {
+            span.trace.executed(stat.name, span);
+        }
+
+        if (event != null) {
+            event.begin();
+        }
+
+        long start = System.nanoTime();
+        Object result;
+
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            long elapsed = System.nanoTime() - start;
+
+            if (event != null) {
+                event.end();
+            }
+            if (timed) {
+                span.failed = true;
+                stat.record(elapsed, true);
+            }
+            if (log != null) {
+                log.observe(stat.name, sql == BATCH ? null : sql, parameters, elapsed, -1, e.getCause());
+            }
+            commit(event, stat.name, span, elapsed, -1, true);
+
+            throw e.getCause();
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        if (event != null) {
+            event.end();
+        }
+
+        // a query is only finished once its results are read; see Query
+
+        if (result instanceof ResultSet) {
+            if (timed || log != null || event != null) {
+                Query query = new Query((ResultSet) result, log, event, timed ? stat : null, span, stat.name, sql,
+                    parameters, elapsed);
+
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, query);
+            }
+
+            return result;
+        }
+
+        long rows = SlowQueryLog.getRows(result);
+
+        if (timed) {
+            stat.record(elapsed, false);
+        }
+        if (log != null) {
+            log.observe(stat.name, sql == BATCH ? null : sql, parameters, elapsed, rows, null);
+        }
+        commit(event, stat.name, span, elapsed, rows, false);
+
+        return result;
+    }
+
+    /**
+     * Names the PowerSchool method that borrowed a connection, e.g. for a flight event. Must
+     * be called on the borrowing thread while the borrower is still running.
+     *
+     * @param span the borrower's span, or null if there is nothing else to record
+     * @return the method
+     */
+
+    static String getBorrower(Span span) {
+        return span != null ? span.getCaller() : INSTANCE.getCaller();
+    }
+
+    /**
+     * Finds the query behind results returned by execute, so that the statement that ran
+     * it can finish it when the statement is closed or executed again.
+     *
+     * @param results the results of an executeQuery call
+     * @return the query, or null if the results are not being counted
+     */
+
+    static Query getQuery(Object results) {
+        if (results != null && Proxy.isProxyClass(results.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(results);
+
+            if (handler instanceof Query) {
+                return (Query) handler;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Counts an action that executed the same statement more times than allowed.
+     *
+     * @param action the action
+     * @param statement the statement name
+     * @param executions the number of times the action executed the statement
+     */
+
+    void flagRepeats(String action, String statement, int executions) {
+        Repeat repeat = repeats.computeIfAbsent(action + " " + statement, k -> new Repeat(action, statement));
+
+        repeat.flagged.incrementAndGet();
+        repeat.executions.accumulateAndGet(executions, Math::max);
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void commit(FlightEvents.Statement event, String statement, Span span, long elapsed, long rows,
+            boolean failed) {
+
+        if (event == null) {
+            return;
+        }
+
+        if (event.shouldCommit()) {
+            event.statement = statement;
+            event.caller = getBorrower(span);
+            event.databaseTime = elapsed;
+            event.rows = rows;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    private Stat getStatement(String sql) {
+        Stat stat = statements.get(sql);
+
+        if (stat == null) {
+            // dynamically built SQL would grow the map without bound; pool it once full
+
+            String key = statements.size() < MAX_STATEMENTS ? sql : OTHER;
+            stat = statements.computeIfAbsent(key, k -> new Stat(getLabel(k)));
+        }
+
+        return stat;
+    }
+
+    private String getLabel(String sql) {
+        String name = names.get(sql);
+
+        if (name != null) {
+            return name;
+        }
+
+        String label = sql.replaceAll("\\s+", " ").trim();
+
+        return label.length() > LABEL_LENGTH ? label.substring(0, LABEL_LENGTH) + "..." : label;
+    }
+
+    /*
+     * Names the outermost PowerSchool method on the stack, or the first caller outside the
+     * connection pool if the connection was borrowed elsewhere.
+     */
+
+    private String getCaller() {
+        return walker.walk(frames -> {
+            String caller = null;
+            String fallback = null;
+
+            for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+                String type = frame.getClassName();
+
+                if (isPoolFrame(type)) {
+                    continue;
+                } else if (type.equals(PowerSchool.class.getName())) {
+                    caller = frame.getMethodName();
+                    continue;
+                }
+
+                if (fallback == null) {
+                    fallback = type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethodName();
+                }
+                if (!type.startsWith("com.apcsa.data.")) {
+                    break;
+                }
+            }
+
+            return caller != null ? caller : fallback != null ? fallback : OTHER;
+        });
+    }
+
+    private static boolean isPoolFrame(String type) {
+        return type.startsWith(QueryMetrics.class.getName()) ||
+            type.startsWith(PooledConnection.class.getName()) ||
+            type.startsWith(StatementCache.class.getName()) ||
+            type.startsWith(ConnectionPool.class.getName()) ||
+            type.contains(".$Proxy");       // the connection and statement proxies
+    }
+
+    /*
+     * Maps the text of every QueryUtils statement to the name of its constant.
+     */
+
+    private static Map<String, String> getStatementNames() {
+        Map<String, String> names = new HashMap<String, String>();
+
+        for (Field field : QueryUtils.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+
+            try {
+                field.setAccessible(true);
+
+                if (field.getType() == String.class) {
+                    names.put((String) field.get(null), field.getName());
+                } else if (field.getType() == String[].class) {
+                    String[] sql = (String[]) field.get(null);
+
+                    for (int i = 0; i < sql.length; i++) {
+                        names.put(sql[i], field.getName() + "[" + i + "]");
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return names;
+    }
+
+    private static String[] summarize(Collection<Stat> stats, int scale) {
+        ArrayList<Stat> sorted = new ArrayList<Stat>();
+
+        for (Stat stat : stats) {
+            if (stat.latency.getCount() > 0) {
+                sorted.add(stat);
+            }
+        }
+        sorted.sort((a, b) -> Long.compare(b.latency.getTotal(), a.latency.getTotal()));
+
+        String[] lines = new String[sorted.size()];
+
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = sorted.get(i).toString(scale);
+        }
+
+        return lines;
+    }
+
+    /////// SPAN //////////////////////////////////////////////////////////////////////////
+
+    static final class Span {
+
+        private final boolean timed;
+        private final boolean sampled;
+        private final ActionTrace trace;
+        private final long start;
+        private String caller;
+        private volatile boolean failed;
+
+        private Span(boolean timed, boolean sampled, ActionTrace trace, long start) {
+            this.timed = timed;
+            this.sampled = sampled;
+            this.trace = trace;
+            this.start = start;
+        }
+
+        /**
+         * Names the PowerSchool method that borrowed the connection, walking the stack the
+         * first time. Must be called on the borrowing thread while the borrower is still
+         * running, e.g. from a statement it executes or when it closes the connection.
+         *
+         * @return the method
+         */
+
+        String getCaller() {
+            if (caller == null) {
+                caller = INSTANCE.getCaller();
+            }
+            return caller;
+        }
+
+        /**
+         * Records the method's latency and whether any of its statements failed, if this
+         * borrow was sampled.
+         */
+
+        void end() {
+            if (sampled) {
+                INSTANCE.methods.computeIfAbsent(getCaller(), Stat::new).record(System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    /////// QUERY /////////////////////////////////////////////////////////////////////////
+
+    /**
+     * The results of a query being measured for the statement statistics, the slow query
+     * log or a flight recording. Each row the caller moves to is counted, and the time spent
+     * moving to it is added to the time the query took to execute, so the caller's own work
+     * between rows is left out. When the query finishes it is recorded, checked against the
+     * log and its event committed, all with that count and time. A query finishes when its
+     * results are closed, or its statement is closed or executed again, whichever comes
+     * first.
+     */
+
+    static final class Query implements InvocationHandler {
+
+        private final ResultSet results;
+        private final SlowQueryLog log;
+        private final FlightEvents.Statement event;
+        private final Stat stat;
+        private final Span span;
+        private final String name;
+        private final String sql;
+        private final Object[] parameters;
+        private long elapsed;
+        private long rows;
+        private boolean finished;
+
+        private Query(ResultSet results, SlowQueryLog log, FlightEvents.Statement event, Stat stat, Span span,
+                String name, String sql, Object[] parameters, long elapsed) {
+
+            this.results = results;
+            this.log = log;
+            this.event = event;
+            this.stat = stat;
+            this.span = span;
+            this.name = name;
+            this.sql = sql;
+            this.parameters = log == null || parameters == null ? null : parameters.clone();  // rebound before the next execution
+            this.elapsed = elapsed;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if (method.getName().equals("next")) {
+                long start = System.nanoTime();
+                Object result;
+
+                try {
+                    result = QueryMetrics.invoke(results, method, args);
+                } finally {
+                    elapsed += System.nanoTime() - start;
+
+                    if (event != null) {
+                        event.end();        // the event ends with the last row read, not when it is closed
+                    }
+                }
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                }
+
+                return result;
+            }
+
+            Object result = QueryMetrics.invoke(results, method, args);
+
+            if (method.getName().equals("close")) {
+                finish();
+            }
+
+            return result;
+        }
+
+        /**
+         * Records the query, checks it against the slow query log and commits its event, once.
+         */
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+
+                if (stat != null) {
+                    stat.record(elapsed, false);
+                }
+                if (log != null) {
+                    log.observe(name, sql, parameters, elapsed, rows, null);
+                }
+                commit(event, name, span, elapsed, rows, false);
+            }
+        }
+    }
+
+    /////// STAT //////////////////////////////////////////////////////////////////////////
+
+    private static final class Stat {
+
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        private Stat(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos, boolean failed) {
+            latency.record(nanos / 1000);
+
+            if (failed) {
+                errors.incrementAndGet();
+            }
+        }
+
+        private void reset() {
+            latency.reset();
+            errors.set(0);
+        }
+
+        /*
+         * Summarizes the stat on one line. If only one in scale occurrences was recorded,
+         * the count, errors and total are multiplied by scale and marked as estimates.
+         */
+
+        private String toString(int scale) {
+            String is = scale > 1 ? "~" : "=";
+
+            return String.format("%-44s count%s%-8d errors%s%-4d total%s%-10s p50=%-8d p99=%-8d max=%d",
+                name, is, latency.getCount() * scale, is, errors.get() * scale,
+                is, String.format("%.1fms", latency.getTotal() * scale / 1000.0),
+                latency.getPercentile(50), latency.getPercentile(99), latency.getMax());
+        }
+    }
+
+    /////// REPEAT ////////////////////////////////////////////////////////////////////////
+
+    private static final class Repeat {
+
+        private final String action;
+        private final String statement;
+        private final AtomicLong flagged = new AtomicLong();
+        private final AtomicLong executions = new AtomicLong();
+
+        private Repeat(String action, String statement) {
+            this.action = action;
+            this.statement = statement;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-28s %-40s flagged=%-6d maxExecutions=%d",
+                action, statement, flagged.get(), executions.get());
+        }
+    }
+}
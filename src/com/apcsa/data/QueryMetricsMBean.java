@@ -0,0 +1,55 @@
+package com.apcsa.data;
+
+/**
+ * The management interface of QueryMetrics, registered with the platform MBean server as
+ * com.apcsa:type=QueryMetrics.
+ */
+
+public interface QueryMetricsMBean {
+
+    /**
+     * @return true if latencies are being recorded; false otherwise
+     */
+
+    boolean isEnabled();
+
+    /**
+     * Starts or stops recording latencies. Recorded values are kept either way.
+     *
+     * @param enabled true to record latencies; false otherwise
+     */
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return one summary line per PowerSchool method, slowest total first; only a sample
+     *         of borrows is measured, so counts, errors and totals are estimates (marked ~)
+     */
+
+    String[] getMethodSummaries();
+
+    /**
+     * @return one summary line per SQL statement, slowest total first
+     */
+
+    String[] getStatementSummaries();
+
+    /**
+     * @return one line per action and statement that the action executed more times than
+     *         allowed (see ActionTrace), most often flagged first
+     */
+
+    String[] getRepeatedStatements();
+
+    /**
+     * @return a printable report of every method and statement
+     */
+
+    String report();
+
+    /**
+     * Discards every recorded latency and error count.
+     */
+
+    void reset();
+}
@@ -0,0 +1,112 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class QueryPlanVerifier {
+
+    /*
+     * The hot queries, by QueryUtils constant name, that must be served by an index.
+     */
+
+    private static final Map<String, String> HOT_QUERIES = new LinkedHashMap<String, String>();
+
+    static {
+        HOT_QUERIES.put("LOGIN_SQL", QueryUtils.LOGIN_SQL);
+        HOT_QUERIES.put("GET_ASSIGNMENTS", QueryUtils.GET_ASSIGNMENTS);
+        HOT_QUERIES.put("GET_ASSIGNMENTS_GRADE", QueryUtils.GET_ASSIGNMENTS_GRADE);
+        HOT_QUERIES.put("GET_STUDENT_COURSES", QueryUtils.GET_STUDENT_COURSES);
+        HOT_QUERIES.put("GET_COURSE_ROSTER", QueryUtils.GET_COURSE_ROSTER);
+        HOT_QUERIES.put("GET_STUDENT_ASSIGNMENT_GRADES", QueryUtils.GET_STUDENT_ASSIGNMENT_GRADES);
+        HOT_QUERIES.put("GET_ALL_STUDENTS_BY_GRADE_SQL", QueryUtils.GET_ALL_STUDENTS_BY_GRADE_SQL);
+        HOT_QUERIES.put("GET_COURSE_GRADE_LEVEL_STANDINGS", QueryUtils.GET_COURSE_GRADE_LEVEL_STANDINGS);
+        HOT_QUERIES.put("GET_RANK_NEIGHBORS", QueryUtils.GET_RANK_NEIGHBORS);
+        HOT_QUERIES.put("SHIFT_CLASS_RANKS", QueryUtils.SHIFT_CLASS_RANKS);
+        HOT_QUERIES.put("GET_ALL_STUDENTS_BY_COURSE_SQL", QueryUtils.GET_ALL_STUDENTS_BY_COURSE_SQL);
+        HOT_QUERIES.put("GET_ALL_TEACHERS_BY_DEPARTMENT_SQL", QueryUtils.GET_ALL_TEACHERS_BY_DEPARTMENT_SQL);
+    }
+
+    /**
+     * Runs EXPLAIN QUERY PLAN for each hot query and reports the ones that scan a table
+     * (or a whole index) instead of searching it.
+     *
+     * @param conn the database connection
+     * @return a description of each offending query; empty if every hot query uses an index
+     * @throws SQLException
+     */
+
+    public static ArrayList<String> verify(Connection conn) throws SQLException {
+        ArrayList<String> problems = new ArrayList<String>();
+
+        for (Map.Entry<String, String> query : HOT_QUERIES.entrySet()) {
+            for (String step : explain(conn, query.getValue())) {
+                if (isScan(step)) {
+                    problems.add(query.getKey() + ": " + step);
+                }
+            }
+        }
+
+        return problems;
+    }
+
+    /**
+     * Retrieves the query plan of a statement. Parameters are left unbound.
+     *
+     * @param conn the database connection
+     * @param sql the statement
+     * @return the detail column of each plan step
+     * @throws SQLException
+     */
+
+    public static ArrayList<String> explain(Connection conn, String sql) throws SQLException {
+        return explain(conn, sql, null);
+    }
+
+    /**
+     * Retrieves the query plan of a statement with its parameters bound, so the planner
+     * sees the same values the statement ran with.
+     *
+     * @param conn the database connection
+     * @param sql the statement
+     * @param parameters the parameter values by index (from 1), or null to leave them unbound
+     * @return the detail column of each plan step
+     * @throws SQLException
+     */
+
+    public static ArrayList<String> explain(Connection conn, String sql, Object[] parameters) throws SQLException {
+        ArrayList<String> steps = new ArrayList<String>();
+
+        // the three-argument overload bypasses the pooled statement cache
+
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            for (int i = 1; parameters != null && i < parameters.length; i++) {
+                stmt.setObject(i, parameters[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    steps.add(rs.getString("detail"));
+                }
+            }
+        }
+
+        return steps;
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Determines whether a plan step visits every row of a table or index.
+     */
+
+    private static boolean isScan(String step) {
+        return step.startsWith("SCAN ") && !step.startsWith("SCAN CONSTANT ROW");
+    }
+}
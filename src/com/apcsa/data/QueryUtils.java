@@ -11,7 +11,52 @@ public class QueryUtils {
     public static final String SETUP_SQL =
         "SELECT COUNT(name) AS names FROM sqlite_master " +
             "WHERE type = 'table' " +
-        "AND name NOT LIKE 'sqlite_%'";
+        "AND name NOT LIKE 'sqlite_%' " +
+        "AND name <> 'sequences'";
+    
+    /*
+     * Secondary indexes for the hot gradebook predicates. These are created (if missing)
+     * every time the database is initialized, so they also reach existing databases.
+     */
+
+    public static final String[] CREATE_INDEXES_SQL = {
+        "CREATE INDEX IF NOT EXISTS idx_assignments_course_mp ON assignments (course_id, marking_period)",
+        "CREATE INDEX IF NOT EXISTS idx_assignments_title ON assignments (title)",
+        "CREATE INDEX IF NOT EXISTS idx_course_grades_student ON course_grades (student_id)",
+        "CREATE INDEX IF NOT EXISTS idx_assignment_grades_student ON assignment_grades (student_id)",
+        "CREATE INDEX IF NOT EXISTS idx_students_grade_level ON students (grade_level)",
+        "CREATE INDEX IF NOT EXISTS idx_teachers_department ON teachers (department_id)"
+    };
+    
+    /*
+     * Refreshes the query planner statistics for tables that need it.
+     */
+    
+    public static final String OPTIMIZE_SQL =
+        "PRAGMA optimize";
+    
+    /*
+     * The sequences table holds the next unreserved value of each id sequence. It is not
+     * part of setup.sql, so it is added to existing databases on startup and survives resets.
+     */
+
+    public static final String CREATE_SEQUENCES_SQL =
+        "CREATE TABLE IF NOT EXISTS sequences (" +
+            "name TEXT PRIMARY KEY, " +
+            "next_value INTEGER NOT NULL)";
+
+    public static final String SEED_ASSIGNMENT_SEQUENCE =
+        "INSERT INTO sequences (name, next_value) " +
+            "SELECT 'assignments', COALESCE(MAX(assignment_id), 0) + 1 FROM assignments WHERE 1 " +
+            "ON CONFLICT (name) DO UPDATE SET next_value = MAX(next_value, excluded.next_value)";
+
+    public static final String RESERVE_SEQUENCE_BLOCK =
+        "UPDATE sequences SET next_value = next_value + ? " +
+            "WHERE name = ?";
+
+    public static final String GET_SEQUENCE_VALUE =
+        "SELECT next_value FROM sequences " +
+            "WHERE name = ?";
     
     /*
      * Updates the last login timestamp each time a user logs into the system.
@@ -101,6 +146,12 @@ public class QueryUtils {
             "ORDER BY " +
                 "last_name, first_name";
     
+    public static final String GET_ALL_COURSES_SQL =
+            "SELECT * FROM " +
+                "courses " +
+            "ORDER BY " +
+                "course_id";
+
     public static final String GET_ALL_STUDENTS_SQL =
             "SELECT * FROM " +
                 "students " +
@@ -113,7 +164,7 @@ public class QueryUtils {
                 "WHERE " +
                     "grade_level = ? " +
                 "ORDER BY " +
-                    "last_name, first_name";
+                    "class_rank = 0, class_rank, last_name, first_name";
     
     public static final String GET_ALL_STUDENTS_BY_COURSE_SQL =
     		"SELECT * FROM " +
@@ -123,51 +174,20 @@ public class QueryUtils {
     	        "ORDER BY " +
     	            "last_name, first_name";
     
-    public static final String GET_NUMBER_OF_COURSES =
-            "SELECT COUNT(*) FROM courses";
-
-    public static final String GET_NUMBER_OF_ASSIGNMENTS = 
-			"SELECT COUNT(*) FROM assignments";
-    
-    public static final String GET_COURSE_NUMBER =
-            "SELECT * FROM courses " +
-                "WHERE course_id = ?";
-    
-    public static final String GET_COURSE_ID =
-            "SELECT * FROM courses " +
-                "WHERE course_no = ?";
-    
     public static final String GET_STUDENT_COURSES = 
     	    "SELECT courses.title, grade, courses.course_id, courses.course_no FROM course_grades " +
     	        "INNER JOIN courses ON course_grades.course_id = courses.course_id " +
-    	        "INNER JOIN students ON students.student_id = course_grades.student_id " +
-    	        "WHERE students.student_id = ?";
-    
-    public static final String GET_COURSES =
-            "SELECT * FROM courses, teachers " +
-             "WHERE teachers.department_id =? AND teachers.department_id = courses.department_id "+
-             "ORDER BY courses.course_id";
-    
-    public static final String GET_ASSIGNMENT_ID = 
-			 "SELECT * FROM assignments " +
-			"WHERE course_id = ? AND marking_period = ? AND title = ?";
+    	        "WHERE course_grades.student_id = ? " +
+    	        "ORDER BY courses.course_id";
     
     public static final String ADD_ASSIGNMENT = 
     		"INSERT INTO assignments " +
     		"VALUES(?, ?, ?, ?, ?, ?, ?)";
     
-    public static final String GET_LAST_ASSIGNMENT_ID = 
-			"SELECT * FROM "+
-					"assignments "+
-				"ORDER BY assignment_id DESC";
-    
     public static final String GET_ASSIGNMENTS =
 			"SELECT * FROM assignments " +
-			"WHERE course_id = ? AND marking_period = ?";
-    
-    public static final String GET_POINT_VALUES =
-			"SELECT * FROM assignments " +
-			"WHERE course_id = ? AND marking_period = ?";
+			"WHERE course_id = ? AND marking_period = ? " +
+			"ORDER BY assignment_id";
     
     public static final String GET_STUDENTS_BY_COURSE =
 	        "SELECT * FROM " +
@@ -183,72 +203,6 @@ public class QueryUtils {
 			"ORDER BY " +
 				"last_name, first_name";
     
-    public static final String UPDATE_COURSE_MP1 =
-	        "UPDATE course_grades " +
-	        "SET mp1 = ? " +
-	        "WHERE course_id = ? " +
-	        "AND student_id = ?";
-
-	    public static final String UPDATE_COURSE_MP2 =
-	        "UPDATE course_grades " +
-	        "SET mp2 = ? " +
-	        "WHERE course_id = ?" +
-	        "AND student_id = ?";
-
-	    public static final String UPDATE_COURSE_MP3 =
-	        "UPDATE course_grades " +
-	        "SET mp3 = ? " +
-	        "WHERE course_id = ?" +
-	        "AND student_id = ?";
-
-	    public static final String UPDATE_COURSE_MP4 =
-	        "UPDATE course_grades " +
-	        "SET mp4 = ? " +
-	        "WHERE course_id = ?" +
-	        "AND student_id = ?";
-
-	    public static final String UPDATE_COURSE_MIDTERM =
-	        "UPDATE course_grades " +
-	        "SET midterm_exam = ? " +
-	        "WHERE course_id = ?" +
-	        "AND student_id = ?";
-
-	    public static final String UPDATE_COURSE_FINAL =
-	        "UPDATE course_grades " +
-	        "SET final_exam = ? " +
-	        "WHERE course_id = ?" +
-	        "AND student_id = ?";
-	    
-	    public static final String GET_MP1_GRADE =
-            "SELECT mp1 FROM course_grades " +
-            "WHERE course_id = ? " +
-            "AND student_id = ?";
-
-	    public static final String GET_MP2_GRADE =
-            "SELECT mp2 FROM course_grades " +
-            "WHERE course_id = ? " +
-            "AND student_id = ?";
-
-       public static final String GET_MP3_GRADE =
-            "SELECT mp3 FROM course_grades " +
-            "WHERE course_id = ? " +
-            "AND student_id = ?";
-
-        public static final String GET_MP4_GRADE =
-            "SELECT mp4 FROM course_grades " +
-            "WHERE course_id = ? " +
-            "AND student_id = ?";
-
-        public static final String GET_MIDTERM_GRADE =
-            "SELECT midterm_exam FROM course_grades " +
-            "WHERE course_id = ? " +
-            "AND student_id = ?";
-
-        public static final String GET_FINAL_GRADE =
-            "SELECT final_exam FROM course_grades " +
-            "WHERE course_id = ? " +
-            "AND student_id = ?"; 
-        
         public static final String GET_ASSIGNMENTS_GRADE =
     			"SELECT * FROM assignment_grades " +
     			"WHERE assignment_id = ? AND student_id = ?";
@@ -262,34 +216,12 @@ public class QueryUtils {
         		"INSERT INTO assignment_grades " +
         		"VALUES(?, ?, ?, ?, ?, ?)";
         
-        public static final String GET_ASSIGNMENT_BY_MP =
-	            "SELECT assignment_id FROM assignments " +
-	            "WHERE marking_period = ?";
-        
-        public static final String GET_GRADES =
-	            "SELECT points_earned, points_possible FROM assignment_grades " +
-	            "WHERE course_id = ? " +
-	            "AND assignment_id = ?" +
-	            "AND student_id = ? ";
-        
         public static final String UPDATE_COURSE_GRADE =
 	            "UPDATE course_grades " +
 	            "SET grade = ? " +
 	            "WHERE course_id = ?" +
 	            "AND student_id = ?";
         
-        public static final String GET_ALL_GRADES_FOR_STUDENT =
-	            "SELECT grade FROM course_grades " +
-	            "WHERE student_id = ?";
-        
-        public static final String GET_COURSE_ID_BY_STUDENT =
-                "SELECT course_id FROM course_grades " +
-                "WHERE student_id = ?";
-        
-        public static final String GET_CREDIT_HOURS =
-                "SELECT credit_hours FROM courses " +
-                "WHERE course_id = ?";
-        
         public static final String UPDATE_GPA =
 	            "UPDATE students " +
 	            "SET gpa = ?" +
@@ -306,92 +238,175 @@ public class QueryUtils {
 	    				"WHERE assignment_id = ? " +
 	    				"AND course_id = ?";
         
-        public static final String GET_STUDENT_ID_BY_USER_ID =
-        		"SELECT student_id FROM students " +
-        				"WHERE user_id = ?";
-        
-        public static final String GET_COURSE_NAME = 
-        		"SELECT title FROM courses " + 
-        				"WHERE course_id = ?";
-        
-        public static final String GET_COURSE_GRADE =
-        		"SELECT grade FROM course_grades " +
-        				"WHERE course_id = ?" +
-        				"AND student_id = ?";
-        
-        public static final String GET_COURSE_ID_WITH_STUDENT_ID =
-        		"SELECT course_id FROM course_grades " +
-        			"WHERE student_id = ?";
-        
-        public static final String GET_COURSE_NUMBER_WITH_COURSE_ID = 
-        		"SELECT course_no FROM courses " +
-        				"WHERE course_id = ?";
-        
-        public static final String GET_ASSIGNMENT_TITLE =
-        		"SELECT title FROM assignments " +
-        				"WHERE course_id = ?" +
-        				"AND marking_period = ?";
-        
-        public static final String GET_ASSIGNMENT_ID_FROM_TITLE_PLUS =
-        		"SELECT assignment_id FROM assignments " +
-        				"WHERE title = ?" +
-        				"AND course_id = ?" +
-        				"AND marking_period = ?";
-        
-        public static final String PREVIOUS_GRADE = 
-        		"SELECT points_earned FROM assignment_grades " +
-        				"WHERE course_id = ?" +
-        				"AND assignment_id = ?" +
-        				"AND student_id = ?";
-        
-        public static final String GET_POINT_VALUE =
-        		"SELECT point_value FROM assignments " +
-        				"WHERE title = ?";
-        
-        public static final String GET_COURSE_ID_FROM_DEPARTMENT_ID = 
-        		"SELECT course_id FROM courses " +
-        				"WHERE course_no = ?";
-        
-        public static final String GET_COURSE_ID_FROM_COURSE_NO =
-        		"SELECT course_id FROM courses " +
-        				"WHERE course_no = ?";
-        
-        public static final String GET_STUDENT_ID_FROM_COURSE_ID =
-        		"SELECT student_id FROM course_grades " +
-        				"WHERE course_id = ?";
-        
-        
         public static final String GET_STUDENTS_BY_STUDENT_ID = 
         		"SELECT first_name, last_name, gpa FROM students " +
         				"WHERE student_id = ?";
         
-        public static final String GET_STUDENTS_FIRST_NAMES = 
-        		"SELECT first_name FROM students " +
-        				"WHERE student_id = ?";
-        
-        public static final String GET_STUDENTS_LAST_NAMES = 
-        		"SELECT last_name FROM students " +
-        				"WHERE student_id = ?";
-        
-        public static final String ROWS_IN_ASSIGNMENT_GRADES =
-        		"SELECT count(*) FROM assignment_grades ";
-        
-        public static final String ADD_ASSIGNMENT_GRADE =
-        		"INSERT INTO assignment_grades " +
-        		    "VALUES(?, ?, ?, ?, ?)";
-        
-        public static final String UPDATE_ASSIGNMENT_GRADE = 
-        		"UPDATE assignment_grades " +
-        				"SET points_earned = ? " +
-        				"WHERE course_id = ?" +
-        				"AND assignment_id = ?" +
-        				"AND student_id = ?";
+        /*
+         * Retrieves every student enrolled in a course along with their grade on one
+         * assignment (null if ungraded).
+         */
+        
+        public static final String GET_COURSE_ROSTER =
+        		"SELECT students.student_id, first_name, last_name, gpa, points_earned FROM course_grades " +
+        			"INNER JOIN students ON students.student_id = course_grades.student_id " +
+        			"LEFT JOIN assignment_grades ON assignment_grades.course_id = course_grades.course_id " +
+        				"AND assignment_grades.assignment_id = ? " +
+        				"AND assignment_grades.student_id = course_grades.student_id " +
+        			"WHERE course_grades.course_id = ? " +
+        			"ORDER BY last_name, first_name";
+        
+        /*
+         * Retrieves the assignments of a course in a marking period along with one student's
+         * grade on each (null if ungraded).
+         */
+        
+        public static final String GET_STUDENT_ASSIGNMENT_GRADES =
+        		"SELECT assignments.assignment_id, title, point_value, points_earned FROM assignments " +
+        			"LEFT JOIN assignment_grades ON assignment_grades.course_id = assignments.course_id " +
+        				"AND assignment_grades.assignment_id = assignments.assignment_id " +
+        				"AND assignment_grades.student_id = ? " +
+        			"WHERE assignments.course_id = ? " +
+        			"AND assignments.marking_period = ? " +
+        			"ORDER BY assignments.assignment_id";
+        
+        /*
+         * Recomputes every marking period and exam average of a course grade from the
+         * assignment grades in that course, in a single pass over the student's grades. The
+         * statement is completed with a WHERE clause for one student, or for a whole course.
+         */
+        
+        private static final String RECOMPUTE_AVERAGES =
+        		"UPDATE course_grades " +
+        			"SET (mp1, mp2, midterm_exam, mp3, mp4, final_exam) = (" +
+        				"SELECT " +
+        					"AVG(CASE WHEN marking_period = 1 THEN percent END), " +
+        					"AVG(CASE WHEN marking_period = 2 THEN percent END), " +
+        					"AVG(CASE WHEN marking_period = 5 THEN percent END), " +
+        					"AVG(CASE WHEN marking_period = 3 THEN percent END), " +
+        					"AVG(CASE WHEN marking_period = 4 THEN percent END), " +
+        					"AVG(CASE WHEN marking_period = 6 THEN percent END) " +
+        				"FROM (" +
+        					"SELECT assignments.marking_period, " +
+        						"(assignment_grades.points_earned * 1.0 / assignment_grades.points_possible) * 100 AS percent " +
+        					"FROM assignment_grades " +
+        					"INNER JOIN assignments ON assignments.course_id = assignment_grades.course_id " +
+        						"AND assignments.assignment_id = assignment_grades.assignment_id " +
+        					"WHERE assignment_grades.course_id = course_grades.course_id " +
+        						"AND assignment_grades.student_id = course_grades.student_id" +
+        				")" +
+        			") ";
+        
+        public static final String RECOMPUTE_STUDENT_AVERAGES =
+        		RECOMPUTE_AVERAGES +
+        			"WHERE course_id = ? " +
+        			"AND student_id = ?";
+        
+        public static final String RECOMPUTE_COURSE_AVERAGES =
+        		RECOMPUTE_AVERAGES +
+        			"WHERE course_id = ?";
+        
+        /*
+         * Retrieves the marking period and exam averages of a course grade, in the slot order
+         * of GradeKernel (MP1, MP2, midterm, MP3, MP4, final).
+         */
+        
+        public static final String GET_MARKING_PERIOD_GRADES =
+        		"SELECT mp1, mp2, midterm_exam, mp3, mp4, final_exam FROM course_grades " +
+        			"WHERE course_id = ? " +
+        			"AND student_id = ?";
+        
+        /*
+         * Retrieves each course grade of a student along with the course's credit hours.
+         */
+        
+        public static final String GET_STUDENT_GRADE_POINTS =
+        		"SELECT course_grades.course_id, grade, credit_hours FROM course_grades " +
+        			"INNER JOIN courses ON courses.course_id = course_grades.course_id " +
+        			"WHERE student_id = ?";
         
-        public static final String PREVIOUS_ASSIGNMENT_ID =
-        		"SELECT count(*) FROM assignments ";
+        /*
+         * Retrieves the marking period and exam averages, and the stored GPA, of every student
+         * in a course.
+         */
+        
+        public static final String GET_COURSE_MARKING_PERIOD_GRADES =
+        		"SELECT course_grades.student_id, mp1, mp2, midterm_exam, mp3, mp4, final_exam, gpa FROM course_grades " +
+        			"INNER JOIN students ON students.student_id = course_grades.student_id " +
+        			"WHERE course_id = ?";
+        
+        /*
+         * Retrieves every course grade, with credit hours, of each student enrolled in a course.
+         */
+        
+        public static final String GET_COURSE_GRADE_POINTS =
+        		"SELECT course_grades.student_id, course_grades.course_id, grade, credit_hours FROM course_grades " +
+        			"INNER JOIN courses ON courses.course_id = course_grades.course_id " +
+        			"WHERE student_id IN (SELECT student_id FROM course_grades WHERE course_id = ?)";
+        
+        /*
+         * Retrieves the GPA and stored class rank of every student, for ranking.
+         */
+        
+        public static final String GET_ALL_STANDINGS =
+        		"SELECT student_id, grade_level, gpa, class_rank FROM students " +
+        			"ORDER BY student_id";
+        
+        /*
+         * Retrieves the GPA and stored class rank of every student in a grade level that has
+         * students enrolled in a course.
+         */
+        
+        public static final String GET_COURSE_GRADE_LEVEL_STANDINGS =
+        		"SELECT student_id, grade_level, gpa, class_rank FROM students " +
+        			"WHERE grade_level IN (SELECT grade_level FROM students " +
+        				"INNER JOIN course_grades ON course_grades.student_id = students.student_id " +
+        				"WHERE course_id = ?) " +
+        			"ORDER BY student_id";
+        
+        /*
+         * Counts, among the other students in a student's grade level, those ranked above a
+         * GPA (and their distinct GPAs) and those holding the student's old and new GPAs.
+         * GPAs are compared in hundredths, as RankEngine ranks them.
+         */
+        
+        public static final String GET_RANK_NEIGHBORS =
+        		"SELECT COUNT(CASE WHEN standing > ? THEN 1 END) AS above, " +
+        			"COUNT(DISTINCT CASE WHEN standing > ? THEN standing END) AS distinct_above, " +
+        			"COUNT(CASE WHEN standing = ? THEN 1 END) AS at_old, " +
+        			"COUNT(CASE WHEN standing = ? THEN 1 END) AS at_new " +
+        		"FROM (SELECT ROUND(gpa * 100) AS standing FROM students " +
+        			"WHERE grade_level = (SELECT grade_level FROM students WHERE student_id = ?) " +
+        			"AND student_id <> ?)";
+        
+        /*
+         * Moves the ranks of the other students in a student's grade level whose GPA, in
+         * hundredths, falls in a range.
+         */
+        
+        public static final String SHIFT_CLASS_RANKS =
+        		"UPDATE students SET class_rank = class_rank + ? " +
+        			"WHERE grade_level = (SELECT grade_level FROM students WHERE student_id = ?) " +
+        			"AND student_id <> ? " +
+        			"AND ROUND(gpa * 100) >= ? " +
+        			"AND ROUND(gpa * 100) < ?";
+        
+        public static final String UPDATE_CLASS_RANK =
+        		"UPDATE students SET class_rank = ? WHERE student_id = ?";
+        
+        /*
+         * Inserts an assignment grade, or updates the existing one. An unchanged grade is
+         * left alone, so the update count tells callers whether anything was written.
+         */
+        
+        public static final String UPSERT_ASSIGNMENT_GRADE =
+        		"INSERT INTO assignment_grades (course_id, assignment_id, student_id, points_earned, points_possible) " +
+        		    "VALUES(?, ?, ?, ?, ?) " +
+        		    "ON CONFLICT (course_id, assignment_id, student_id) DO UPDATE " +
+        		    "SET points_earned = excluded.points_earned, points_possible = excluded.points_possible " +
+        		    "WHERE points_earned IS NOT excluded.points_earned " +
+        		    "OR points_possible IS NOT excluded.points_possible";
         
-        public static final String GET_ASSIGNMENT_IDS =
-        		"SELECT assignment_id FROM assignments ";
         
         
 }
\ No newline at end of file
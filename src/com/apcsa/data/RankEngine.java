@@ -0,0 +1,265 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import com.apcsa.util.IntList;
+
+class RankEngine {
+
+    /**
+     * How students with the same GPA are ranked.
+     */
+
+    enum Mode {
+
+        /*
+         * Tied students share a rank and the next rank is skipped (1, 2, 2, 4).
+         */
+
+        COMPETITION,
+
+        /*
+         * Tied students share a rank and the next rank is not skipped (1, 2, 2, 3).
+         */
+
+        DENSE
+    }
+
+    private static final long UNGRADED = 0xFFFF;    // sorts after every GPA in a grade level
+
+    private final Mode mode;
+
+    /**
+     * Creates an instance of the RankEngine class.
+     *
+     * @param mode how ties are ranked
+     */
+
+    RankEngine(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Ranks every grade level in the school and writes the ranks that changed.
+     *
+     * @param conn the current database connection
+     * @return the number of ranks that changed
+     * @throws SQLException
+     */
+
+    int rankAll(Connection conn) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(QueryUtils.GET_ALL_STANDINGS)) {
+            return rank(conn, select);
+        }
+    }
+
+    /**
+     * Updates the stored ranks of a student's grade level after their GPA changed, within
+     * the caller's transaction. The stored ranks must be current apart from this move, so
+     * callers write one GPA and move it before the next.
+     *
+     * Only the students whose rank the move affects are written: in COMPETITION mode those
+     * with a GPA from the lower of the two GPAs up to (not including) the higher one; in
+     * DENSE mode those below a GPA that the move left empty or newly occupied.
+     *
+     * @param conn the current database connection
+     * @param studentId the student
+     * @param oldGpa the GPA the stored ranks were computed from, or -1 if ungraded
+     * @param newGpa the student's new GPA, or -1 if ungraded
+     * @return the number of ranks that changed
+     * @throws SQLException
+     */
+
+    int move(Connection conn, int studentId, double oldGpa, double newGpa) throws SQLException {
+        long from = standing(oldGpa);
+        long to = standing(newGpa);
+
+        if (from == to) {
+            return 0;
+        }
+
+        int above;
+        int distinctAbove;
+        boolean leftEmpty;
+        boolean newlyOccupied;
+
+        try (PreparedStatement select = conn.prepareStatement(QueryUtils.GET_RANK_NEIGHBORS)) {
+            select.setLong(1, to);
+            select.setLong(2, to);
+            select.setLong(3, from);
+            select.setLong(4, to);
+            select.setInt(5, studentId);
+            select.setInt(6, studentId);
+
+            try (ResultSet rs = select.executeQuery()) {
+                rs.next();
+
+                above = rs.getInt("above");
+                distinctAbove = rs.getInt("distinct_above");
+                leftEmpty = rs.getInt("at_old") == 0;
+                newlyOccupied = rs.getInt("at_new") == 0;
+            }
+        }
+
+        int changed = 0;
+
+        // an ungraded student sits below every GPA, so shifts then reach down to 0.00
+
+        if (mode == Mode.DENSE) {
+            if (from >= 0 && leftEmpty) {
+                changed += shift(conn, studentId, 0, from, -1);
+            }
+            if (to >= 0 && newlyOccupied) {
+                changed += shift(conn, studentId, 0, to, 1);
+            }
+        } else if (to > from) {
+            changed += shift(conn, studentId, Math.max(from, 0), to, 1);
+        } else {
+            changed += shift(conn, studentId, Math.max(to, 0), from, -1);
+        }
+
+        try (PreparedStatement update = conn.prepareStatement(QueryUtils.UPDATE_CLASS_RANK)) {
+            update.setInt(1, to < 0 ? 0 : 1 + (mode == Mode.DENSE ? distinctAbove : above));
+            update.setInt(2, studentId);
+
+            changed += update.executeUpdate();
+        }
+
+        return changed;
+    }
+
+    /**
+     * Re-ranks every grade level with students enrolled in a course whose grades changed,
+     * within the caller's transaction.
+     *
+     * @param conn the current database connection
+     * @param courseId the course
+     * @return the number of ranks that changed
+     * @throws SQLException
+     */
+
+    int rankCourse(Connection conn, int courseId) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(QueryUtils.GET_COURSE_GRADE_LEVEL_STANDINGS)) {
+            select.setInt(1, courseId);
+
+            return rank(conn, select);
+        }
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * Adds delta to the ranks of the other students in a student's grade level whose GPA,
+     * in hundredths, is in [low, high).
+     */
+
+    private static int shift(Connection conn, int studentId, long low, long high, int delta) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement(QueryUtils.SHIFT_CLASS_RANKS)) {
+            update.setInt(1, delta);
+            update.setInt(2, studentId);
+            update.setInt(3, studentId);
+            update.setLong(4, low);
+            update.setLong(5, high);
+
+            return update.executeUpdate();
+        }
+    }
+
+    /*
+     * Converts a GPA to the hundredths rank compares, or -1 if ungraded.
+     */
+
+    private static long standing(double gpa) {
+        return gpa < 0 ? -1 : Math.round(gpa * 100);
+    }
+
+    /*
+     * Ranks the students returned by a standings query, one grade level at a time.
+     *
+     * Each student is packed into a long that sorts by grade level, then GPA (highest
+     * first, ungraded last), then position in the query, which is ordered by student id:
+     *
+     *     bits 48-62: grade level
+     *     bits 32-47: 0xFFFE minus the GPA in hundredths, or UNGRADED
+     *     bits  0-31: index into the query results
+     *
+     * so a single primitive sort orders the whole school. Only ranks that differ from the
+     * stored ones are written, as one batch.
+     */
+
+    private int rank(Connection conn, PreparedStatement select) throws SQLException {
+        IntList ids = new IntList(256);
+        IntList ranks = new IntList(256);
+        long[] keys = new long[256];
+        int count = 0;
+
+        try (ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+
+                double gpa = rs.getDouble("gpa");
+                long standing = gpa < 0 ? UNGRADED : 0xFFFE - Math.min(0xFFFE, Math.round(gpa * 100));
+
+                keys[count] = ((rs.getLong("grade_level") & 0x7FFF) << 48) | (standing << 32) | count;
+                ids.add(rs.getInt("student_id"));
+                ranks.add(rs.getInt("class_rank"));
+                count++;
+            }
+        }
+
+        Arrays.parallelSort(keys, 0, count);
+
+        int changed = 0;
+
+        try (PreparedStatement update = conn.prepareStatement(QueryUtils.UPDATE_CLASS_RANK)) {
+            long level = -1;
+            long previous = -1;
+            int position = 0;
+            int dense = 0;
+            int rank = 0;
+
+            for (int i = 0; i < count; i++) {
+                long key = keys[i];
+                long standing = (key >>> 32) & 0xFFFF;
+                int index = (int) key;
+
+                if ((key >>> 48) != level) {
+                    level = key >>> 48;
+                    previous = -1;
+                    position = 0;
+                    dense = 0;
+                }
+
+                if (standing == UNGRADED) {
+                    rank = 0;
+                } else {
+                    position++;
+
+                    if (standing != previous) {
+                        dense++;
+                        rank = mode == Mode.DENSE ? dense : position;
+                        previous = standing;
+                    }
+                }
+
+                if (rank != ranks.get(index)) {
+                    update.setInt(1, rank);
+                    update.setInt(2, ids.get(index));
+                    update.addBatch();
+                    changed++;
+                }
+            }
+
+            if (changed > 0) {
+                update.executeBatch();
+            }
+        }
+
+        return changed;
+    }
+}
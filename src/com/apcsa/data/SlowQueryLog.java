@@ -0,0 +1,284 @@
+package com.apcsa.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs every statement that takes longer than a threshold, with its bound parameters, row
+ * count and query plan. Callers only hand the entry to a bounded queue; the plan is looked
+ * up and the entry written by a background thread, and entries are dropped (and counted)
+ * rather than blocking when the queue is full. The log rolls over to numbered files once
+ * it reaches its maximum size.
+ */
+
+class SlowQueryLog {
+
+    private static final int QUEUE_SIZE = 1024;
+    private static final long MAX_BYTES = 1024 * 1024;
+    private static final int MAX_FILES = 5;
+
+    private final String url;
+    private final File file;
+    private final long threshold;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(QUEUE_SIZE);
+    private final AtomicLong logged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile Thread writer;
+
+    /**
+     * Creates an instance of the SlowQueryLog class.
+     *
+     * @param url the JDBC URL of the database, used to look up query plans
+     * @param file the log file
+     * @param thresholdMillis the minimum duration logged; negative to disable the log
+     */
+
+    SlowQueryLog(String url, File file, long thresholdMillis) {
+        this.url = url;
+        this.file = file;
+        this.threshold = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * @return true if slow statements are logged; false otherwise
+     */
+
+    boolean isEnabled() {
+        return threshold >= 0;
+    }
+
+    /**
+     * Checks a finished statement against the threshold, queueing it if it was slow.
+     *
+     * @param name the statement name
+     * @param sql the SQL text, or null for a batch of plain statements
+     * @param parameters the bound parameter values by index (from 1), or null
+     * @param elapsed the nanoseconds the statement took; for a query, including reading its results
+     * @param rows the number of rows changed, or read from a query's results; -1 if unknown
+     * @param error the failure, or null if the statement succeeded
+     */
+
+    void observe(String name, String sql, Object[] parameters, long elapsed, long rows, Throwable error) {
+        if (elapsed >= threshold) {
+            offer(new Entry(name, sql, parameters, elapsed, rows, error));
+        }
+    }
+
+    /**
+     * @return the log file
+     */
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of statements written to the log
+     */
+
+    long getLogged() {
+        return logged.get();
+    }
+
+    /**
+     * @return the number of slow statements dropped because the queue was full
+     */
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the minimum duration logged, in milliseconds
+     */
+
+    long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(threshold);
+    }
+
+    /**
+     * Converts the result of an execute method into a row count.
+     *
+     * @param result the value returned by the execute method
+     * @return the number of rows changed, or -1 if the result is not a count
+     */
+
+    static long getRows(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return ((Number) result).longValue();
+        } else if (result instanceof int[]) {
+            long rows = 0;
+
+            for (int count : (int[]) result) {
+                rows += Math.max(0, count);
+            }
+
+            return rows;
+        }
+
+        return -1;
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    private void offer(Entry entry) {
+        if (!queue.offer(entry)) {
+            dropped.incrementAndGet();
+
+            return;
+        }
+
+        if (writer == null) {
+            startWriter();
+        }
+    }
+
+    private synchronized void startWriter() {
+        if (writer == null) {
+            writer = new Thread(this::write, "powerschool-slow-query-log");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /*
+     * Writes entries as they arrive. The plan connection is only held while there is a
+     * backlog, so it never outlives a factory reset of the database for long.
+     */
+
+    private void write() {
+        while (true) {
+            try {
+                Entry entry = queue.take();
+
+                try (Connection conn = DriverManager.getConnection(url)) {
+                    do {
+                        append(format(entry, conn));
+                    } while ((entry = queue.poll()) != null);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private String format(Entry entry, Connection conn) {
+        StringBuilder text = new StringBuilder();
+
+        text.append(entry.time).append(' ').append(entry.name)
+            .append(String.format(" %.1f ms", entry.elapsed / 1e6))
+            .append(entry.rows < 0 ? "" : ", " + entry.rows + " rows")
+            .append(", thread ").append(entry.thread).append('\n');
+
+        if (entry.error != null) {
+            text.append("  Error: ").append(entry.error).append('\n');
+        }
+
+        if (entry.sql == null) {
+            return text.append('\n').toString();       // a batch of plain statements; no single plan
+        }
+
+        text.append("  SQL: ").append(entry.sql.replaceAll("\\s+", " ").trim()).append('\n');
+
+        if (entry.parameters != null) {
+            text.append("  Parameters: ")
+                .append(Arrays.toString(Arrays.copyOfRange(entry.parameters, 1, entry.parameters.length))).append('\n');
+        }
+
+        text.append("  Plan:\n");
+
+        try {
+            ArrayList<String> steps = QueryPlanVerifier.explain(conn, entry.sql, entry.parameters);
+
+            for (String step : steps) {
+                text.append("    ").append(step).append('\n');
+            }
+            if (steps.isEmpty()) {
+                text.append("    (none)\n");
+            }
+        } catch (SQLException e) {
+            text.append("    (unavailable: ").append(e.getMessage()).append(")\n");
+        }
+
+        return text.append('\n').toString();
+    }
+
+    private void append(String text) {
+        try {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            if (file.length() + bytes.length > MAX_BYTES) {
+                roll();
+            }
+
+            Files.write(file.toPath(), bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            logged.incrementAndGet();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * Shifts slow-queries.log to slow-queries.log.1, .1 to .2, and so on, discarding the
+     * oldest file.
+     */
+
+    private void roll() throws IOException {
+        for (int i = MAX_FILES - 1; i > 0; i--) {
+            File older = new File(file.getPath() + "." + i);
+
+            if (older.exists()) {
+                Files.move(older.toPath(), new File(file.getPath() + "." + (i + 1)).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        if (file.exists()) {
+            Files.move(file.toPath(), new File(file.getPath() + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /////// ENTRY /////////////////////////////////////////////////////////////////////////
+
+    private static final class Entry {
+
+        private final LocalDateTime time = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        private final String thread = Thread.currentThread().getName();
+        private final String name;
+        private final String sql;
+        private final Object[] parameters;
+        private final long elapsed;
+        private final long rows;
+        private final String error;
+
+        private Entry(String name, String sql, Object[] parameters, long elapsed, long rows, Throwable error) {
+            this.name = name;
+            this.sql = sql;
+            this.parameters = parameters == null ? null : parameters.clone();
+            this.elapsed = elapsed;
+            this.rows = rows;
+            this.error = error == null ? null : error.toString();
+        }
+    }
+}
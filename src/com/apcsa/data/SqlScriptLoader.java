@@ -0,0 +1,244 @@
+package com.apcsa.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class SqlScriptLoader {
+
+    private final int batchSize;
+
+    /**
+     * Creates an instance of the SqlScriptLoader class.
+     *
+     * @param batchSize the number of statements sent to the database per JDBC batch
+     */
+
+    public SqlScriptLoader(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Streams a SQL script and executes its statements in JDBC batches inside a single
+     * transaction. The transaction is committed only if every statement succeeds; on failure
+     * it is rolled back and the database is left untouched.
+     *
+     * Statements are separated by semicolons. Semicolons inside quoted strings, quoted
+     * identifiers, and comments are ignored. Trigger bodies (BEGIN ... END) are not
+     * supported.
+     *
+     * @param conn the database connection
+     * @param script the SQL script
+     * @return the number of statements executed
+     * @throws IOException if the script cannot be read
+     * @throws SQLException if a statement fails
+     */
+
+    public int load(Connection conn, Reader script) throws IOException, SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        int executed = 0;
+
+        conn.setAutoCommit(false);
+
+        try (Statement stmt = conn.createStatement()) {
+            Parser parser = new Parser(script);
+            String sql;
+            int pending = 0;
+
+            while ((sql = parser.next()) != null) {
+                stmt.addBatch(sql);
+
+                if (++pending == batchSize) {
+                    stmt.executeBatch();
+                    executed += pending;
+                    pending = 0;
+                }
+            }
+
+            if (pending > 0) {
+                stmt.executeBatch();
+                executed += pending;
+            }
+
+            conn.commit();
+        } catch (IOException | SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        return executed;
+    }
+
+    /////// PARSER ////////////////////////////////////////////////////////////////////////
+
+    /*
+     * Splits a character stream into SQL statements without reading it all into memory.
+     */
+
+    private static class Parser {
+
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder statement = new StringBuilder();
+
+        private int length;
+        private int position;
+        private int pushback = -1;
+
+        private Parser(Reader reader) {
+            this.reader = reader;
+        }
+
+        /*
+         * Returns the next non-empty statement (without its terminating semicolon), or null
+         * at the end of the script.
+         */
+
+        private String next() throws IOException {
+            int c;
+
+            statement.setLength(0);
+
+            while ((c = read()) != -1) {
+                switch (c) {
+                    case ';':
+                        if (!isBlank()) {
+                            return statement.toString().trim();
+                        }
+                        statement.setLength(0);
+                        break;
+                    case '\'':
+                    case '"':
+                    case '`':
+                        quoted((char) c, (char) c);
+                        break;
+                    case '[':
+                        quoted('[', ']');
+                        break;
+                    case '-':
+                        if (peek('-')) {
+                            skipLineComment();
+                        } else {
+                            statement.append('-');
+                        }
+                        break;
+                    case '/':
+                        if (peek('*')) {
+                            skipBlockComment();
+                        } else {
+                            statement.append('/');
+                        }
+                        break;
+                    default:
+                        statement.append((char) c);
+                        break;
+                }
+            }
+
+            return isBlank() ? null : statement.toString().trim();     // last statement may lack a semicolon
+        }
+
+        /*
+         * Copies a quoted literal or identifier. A doubled closing quote is an escaped quote.
+         */
+
+        private void quoted(char open, char close) throws IOException {
+            int c;
+
+            statement.append(open);
+
+            while ((c = read()) != -1) {
+                statement.append((char) c);
+
+                if (c == close) {
+                    if (open != close || !peek(close)) {
+                        return;
+                    }
+                    statement.append(close);
+                }
+            }
+        }
+
+        /*
+         * Skips to the end of a -- comment, keeping the line break as whitespace.
+         */
+
+        private void skipLineComment() throws IOException {
+            int c;
+
+            while ((c = read()) != -1) {
+                if (c == '\n') {
+                    statement.append('\n');
+                    return;
+                }
+            }
+        }
+
+        /*
+         * Skips to the end of a block comment.
+         */
+
+        private void skipBlockComment() throws IOException {
+            int c;
+
+            while ((c = read()) != -1) {
+                if (c == '*' && peek('/')) {
+                    statement.append(' ');
+                    return;
+                }
+            }
+        }
+
+        /*
+         * Consumes the next character if it matches the expected one.
+         */
+
+        private boolean peek(char expected) throws IOException {
+            int c = read();
+
+            if (c == expected) {
+                return true;
+            }
+
+            pushback = c;
+
+            return false;
+        }
+
+        private int read() throws IOException {
+            if (pushback != -1) {
+                int c = pushback;
+                pushback = -1;
+
+                return c;
+            }
+
+            if (position == length) {
+                length = reader.read(buffer, 0, buffer.length);
+                position = 0;
+
+                if (length <= 0) {
+                    length = 0;
+
+                    return -1;
+                }
+            }
+
+            return buffer[position++];
+        }
+
+        private boolean isBlank() {
+            for (int i = 0; i < statement.length(); i++) {
+                if (!Character.isWhitespace(statement.charAt(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
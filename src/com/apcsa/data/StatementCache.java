@@ -0,0 +1,256 @@
+package com.apcsa.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class StatementCache {
+
+    private final Connection physical;
+    private final int capacity;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an instance of the StatementCache class.
+     *
+     * @param physical the connection that owns the cached statements
+     * @param capacity the maximum number of cached statements
+     */
+
+    StatementCache(Connection physical, int capacity) {
+        this.physical = physical;
+        this.capacity = capacity;
+
+        // access-ordered so the eldest entry is always the least recently used statement
+
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > StatementCache.this.capacity) {
+                    eldest.getValue().evict();
+
+                    return true;
+                }
+
+                return false;
+            }
+
+        };
+    }
+
+    /**
+     * Returns a prepared statement for the SQL, reusing the compiled statement when it is
+     * cached and not already in use. Closing the returned statement releases it back to
+     * the cache instead of finalizing it.
+     *
+     * @param sql the SQL text (normally a QueryUtils constant)
+     * @param owner the logical connection handed to the borrower
+     * @param span the borrower's metrics span, or null if metrics are disabled
+     * @return the prepared statement
+     * @throws SQLException
+     */
+
+    PreparedStatement prepare(String sql, Connection owner, QueryMetrics.Span span) throws SQLException {
+        CachedStatement cached = capacity < 1 ? null : statements.get(sql);
+
+        if (capacity < 1 || (cached != null && cached.inUse)) {
+            misses++;
+
+            // same SQL open twice (or no cache); use a statement of its own that is
+            // finalized on close, but still hand it out through a timed handle
+
+            cached = new CachedStatement(sql, physical.prepareStatement(sql));
+            cached.evicted = true;
+        } else if (cached == null) {
+            misses++;
+            cached = new CachedStatement(sql, physical.prepareStatement(sql));
+            statements.put(sql, cached);
+        } else {
+            hits++;
+        }
+
+        return cached.checkout(owner, span);
+    }
+
+    /**
+     * Finalizes every cached statement.
+     */
+
+    void clear() {
+        for (CachedStatement cached : statements.values()) {
+            cached.evict();
+        }
+        statements.clear();
+    }
+
+    /**
+     * @return the number of prepares served from the cache
+     */
+
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of prepares that compiled a new statement
+     */
+
+    long getMisses() {
+        return misses;
+    }
+
+    /////// CACHED STATEMENT //////////////////////////////////////////////////////////////
+
+    private static class CachedStatement {
+
+        private final String sql;
+        private final PreparedStatement physical;
+        private Object[] parameters;                    // bound values by index, kept for the slow query log
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(String sql, PreparedStatement physical) {
+            this.sql = sql;
+            this.physical = physical;
+        }
+
+        /*
+         * Hands out a logical handle to the cached statement.
+         */
+
+        private PreparedStatement checkout(Connection owner, QueryMetrics.Span span) {
+            inUse = true;
+
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new Handle(owner, span));
+        }
+
+        /*
+         * Returns the statement to the cache, or finalizes it if it was evicted while in use.
+         */
+
+        private void checkin() throws SQLException {
+            inUse = false;
+
+            if (evicted) {
+                physical.close();
+            } else {
+                physical.clearParameters();
+                physical.clearBatch();
+
+                if (parameters != null) {
+                    Arrays.fill(parameters, null);
+                }
+            }
+        }
+
+        /*
+         * Remembers a bound parameter value. The array is sized to the highest index bound,
+         * which is the same on every use of the same SQL.
+         */
+
+        private void bind(int index, Object value) {
+            if (parameters == null || index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters == null ? new Object[0] : parameters, index + 1);
+            }
+            parameters[index] = value;
+        }
+
+        /*
+         * Removes the statement from the cache, finalizing it now unless it is in use.
+         */
+
+        private void evict() {
+            evicted = true;
+
+            if (!inUse) {
+                try {
+                    physical.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private class Handle implements InvocationHandler {
+
+            private final Connection owner;
+            private final QueryMetrics.Span span;
+            private QueryMetrics.Query query;
+            private boolean closed;
+
+            private Handle(Connection owner, QueryMetrics.Span span) {
+                this.owner = owner;
+                this.span = span;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            finishQuery();
+                            checkin();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed;
+                    case "getConnection":
+                        return owner;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        break;
+                }
+
+                if (closed) {
+                    throw new SQLException("Statement is closed.");
+                }
+
+                String name = method.getName();
+
+                if (name.startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer) {
+                    bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.equals("clearParameters") && parameters != null) {
+                    Arrays.fill(parameters, null);
+                } else if (name.startsWith("execute")) {
+                    finishQuery();
+                }
+
+                Object result = QueryMetrics.getInstance().execute(span, sql, parameters, physical, method, args);
+
+                if (name.equals("executeQuery")) {
+                    query = QueryMetrics.getQuery(result);
+                }
+
+                return result;
+            }
+
+            /*
+             * Finishes the last query now that its results are done with.
+             */
+
+            private void finishQuery() {
+                if (query != null) {
+                    query.finish();
+                    query = null;
+                }
+            }
+        }
+    }
+}
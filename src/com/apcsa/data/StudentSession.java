@@ -0,0 +1,75 @@
+package com.apcsa.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.apcsa.model.CourseGrade;
+
+public class StudentSession {
+
+    private final int studentId;
+    private final long version;
+    private final List<CourseGrade> courses;
+
+    /*
+     * Creates a snapshot of a student's courses and grades. Use PowerSchool.getStudentSession().
+     */
+
+    private StudentSession(int studentId, long version, List<CourseGrade> courses) {
+        this.studentId = studentId;
+        this.version = version;
+        this.courses = Collections.unmodifiableList(courses);
+    }
+
+    /**
+     * @return studentId
+     */
+
+    public int getStudentId() {
+        return studentId;
+    }
+
+    /**
+     * Retrieves the student's enrolled courses with their current grades.
+     *
+     * @return the courses, ordered by course id
+     */
+
+    public List<CourseGrade> getCourses() {
+        return courses;
+    }
+
+    /////// PACKAGE METHODS ///////////////////////////////////////////////////////////////
+
+    /*
+     * @return the grade version the snapshot was taken at
+     */
+
+    long getVersion() {
+        return version;
+    }
+
+    /*
+     * Loads a student's courses, titles, numbers, and grades with a single query.
+     */
+
+    static StudentSession load(Connection conn, int studentId, long version) throws SQLException {
+        List<CourseGrade> courses = new ArrayList<CourseGrade>();
+
+        try (PreparedStatement stmt = conn.prepareStatement(QueryUtils.GET_STUDENT_COURSES)) {
+            stmt.setInt(1, studentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    courses.add(new CourseGrade(rs));
+                }
+            }
+        }
+
+        return new StudentSession(studentId, version, courses);
+    }
+}
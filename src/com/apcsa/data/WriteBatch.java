@@ -0,0 +1,139 @@
+package com.apcsa.data;
+
+import java.util.ArrayList;
+
+/**
+ * Collects gradebook changes so they can be written together, in one transaction, by
+ * PowerSchool.executeBatch. Nothing touches the database until then, except that adding
+ * an assignment reserves its id right away so later grades in the batch can refer to it.
+ */
+
+public class WriteBatch {
+
+    final ArrayList<PendingAssignment> assignments = new ArrayList<PendingAssignment>();
+    final ArrayList<PendingGrade> grades = new ArrayList<PendingGrade>();
+    final ArrayList<String> passwordResets = new ArrayList<String>();
+
+    /**
+     * Queues a new assignment.
+     *
+     * @param courseId the course
+     * @param markingPeriod the marking period (5 and 6 are the midterm and final exams)
+     * @param title the title
+     * @param pointValue the point value
+     * @return the id reserved for the assignment; -1 if none could be reserved
+     */
+
+    public int addAssignment(int courseId, int markingPeriod, String title, int pointValue) {
+        int assignmentId = PowerSchool.nextAssignmentId();
+
+        if (assignmentId != -1) {
+            assignments.add(new PendingAssignment(courseId, assignmentId, markingPeriod, title, pointValue));
+        }
+
+        return assignmentId;
+    }
+
+    /**
+     * Queues a student's grade on an assignment, replacing any existing grade.
+     *
+     * @param courseId the course
+     * @param assignmentId the assignment
+     * @param studentId the student
+     * @param pointsEarned the points earned
+     * @param pointsPossible the assignment's point value
+     */
+
+    public void enterGrade(int courseId, int assignmentId, int studentId, double pointsEarned, int pointsPossible) {
+        grades.add(new PendingGrade(courseId, assignmentId, studentId, pointsEarned, pointsPossible));
+    }
+
+    /**
+     * Queues a password reset. The password is reset to the username, and the user is
+     * asked to change it on their next login.
+     *
+     * @param username the user's username
+     */
+
+    public void resetPassword(String username) {
+        passwordResets.add(username);
+    }
+
+    /**
+     * @return the number of queued assignments
+     */
+
+    public int getAssignmentCount() {
+        return assignments.size();
+    }
+
+    /**
+     * @return the number of queued grades
+     */
+
+    public int getGradeCount() {
+        return grades.size();
+    }
+
+    /**
+     * @return the number of queued password resets
+     */
+
+    public int getPasswordResetCount() {
+        return passwordResets.size();
+    }
+
+    /**
+     * @return true if nothing is queued; false otherwise
+     */
+
+    public boolean isEmpty() {
+        return assignments.isEmpty() && grades.isEmpty() && passwordResets.isEmpty();
+    }
+
+    /**
+     * Discards every queued change. Ids reserved for queued assignments are not reused.
+     */
+
+    public void clear() {
+        assignments.clear();
+        grades.clear();
+        passwordResets.clear();
+    }
+
+    /////// PENDING CHANGES ///////////////////////////////////////////////////////////////
+
+    static final class PendingAssignment {
+
+        final int courseId;
+        final int assignmentId;
+        final int markingPeriod;
+        final String title;
+        final int pointValue;
+
+        private PendingAssignment(int courseId, int assignmentId, int markingPeriod, String title, int pointValue) {
+            this.courseId = courseId;
+            this.assignmentId = assignmentId;
+            this.markingPeriod = markingPeriod;
+            this.title = title;
+            this.pointValue = pointValue;
+        }
+    }
+
+    static final class PendingGrade {
+
+        final int courseId;
+        final int assignmentId;
+        final int studentId;
+        final double pointsEarned;
+        final int pointsPossible;
+
+        private PendingGrade(int courseId, int assignmentId, int studentId, double pointsEarned, int pointsPossible) {
+            this.courseId = courseId;
+            this.assignmentId = assignmentId;
+            this.studentId = studentId;
+            this.pointsEarned = pointsEarned;
+            this.pointsPossible = pointsPossible;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class Assignment {
+
+    private int courseId;
+    private int assignmentId;
+    private int markingPeriod;
+    private String title;
+    private int pointValue;
+
+    /**
+     * Creates an instance of the Assignment class.
+     *
+     * @param rs a ResultSet row of the assignments table
+     * @throws SQLException
+     */
+
+    public Assignment(ResultSet rs) throws SQLException {
+        this.courseId = rs.getInt("course_id");
+        this.assignmentId = rs.getInt("assignment_id");
+        this.markingPeriod = rs.getInt("marking_period");
+        this.title = rs.getString("title");
+        this.pointValue = rs.getInt("point_value");
+    }
+
+    /**
+     * @return courseId
+     */
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    /**
+     * @return assignmentId
+     */
+
+    public int getAssignmentId() {
+        return assignmentId;
+    }
+
+    /**
+     * @return markingPeriod
+     */
+
+    public int getMarkingPeriod() {
+        return markingPeriod;
+    }
+
+    /**
+     * @return title
+     */
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return pointValue
+     */
+
+    public int getPointValue() {
+        return pointValue;
+    }
+}
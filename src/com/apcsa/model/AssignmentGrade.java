@@ -0,0 +1,62 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class AssignmentGrade {
+
+    private int assignmentId;
+    private String title;
+    private int pointsEarned;
+    private int pointsPossible;
+
+    /**
+     * Creates an instance of the AssignmentGrade class.
+     *
+     * @param rs a ResultSet row of the student assignment grades query
+     * @throws SQLException
+     */
+
+    public AssignmentGrade(ResultSet rs) throws SQLException {
+        this.assignmentId = rs.getInt("assignment_id");
+        this.title = rs.getString("title");
+        this.pointsPossible = rs.getInt("point_value");
+        this.pointsEarned = rs.getInt("points_earned");
+
+        if (rs.wasNull()) {
+            this.pointsEarned = -1;     // no grade entered for this assignment yet
+        }
+    }
+
+    /**
+     * @return assignmentId
+     */
+
+    public int getAssignmentId() {
+        return assignmentId;
+    }
+
+    /**
+     * @return title
+     */
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return the points earned, or -1 if ungraded
+     */
+
+    public int getPointsEarned() {
+        return pointsEarned;
+    }
+
+    /**
+     * @return pointsPossible
+     */
+
+    public int getPointsPossible() {
+        return pointsPossible;
+    }
+}
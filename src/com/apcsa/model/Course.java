@@ -0,0 +1,88 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class Course {
+
+    private int courseId;
+    private int departmentId;
+    private int teacherId;
+    private String courseNo;
+    private String title;
+    private double creditHours;
+    private double weight;
+
+    /**
+     * Creates an instance of the Course class.
+     *
+     * @param rs a ResultSet row of the courses table
+     * @throws SQLException
+     */
+
+    public Course(ResultSet rs) throws SQLException {
+        this.courseId = rs.getInt("course_id");
+        this.departmentId = rs.getInt("department_id");
+        this.teacherId = rs.getInt("teacher_id");
+        this.courseNo = rs.getString("course_no");
+        this.title = rs.getString("title");
+        this.creditHours = rs.getDouble("credit_hours");
+        this.weight = rs.getDouble("weight");
+    }
+
+    /**
+     * @return courseId
+     */
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    /**
+     * @return departmentId
+     */
+
+    public int getDepartmentId() {
+        return departmentId;
+    }
+
+    /**
+     * @return teacherId
+     */
+
+    public int getTeacherId() {
+        return teacherId;
+    }
+
+    /**
+     * @return courseNo
+     */
+
+    public String getCourseNo() {
+        return courseNo;
+    }
+
+    /**
+     * @return title
+     */
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return creditHours
+     */
+
+    public double getCreditHours() {
+        return creditHours;
+    }
+
+    /**
+     * @return weight
+     */
+
+    public double getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,72 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class CourseGrade {
+
+    private int courseId;
+    private String courseNo;
+    private String title;
+    private Double grade;
+
+    /**
+     * Creates an instance of the CourseGrade class.
+     *
+     * @param rs a ResultSet row of the student courses query
+     * @throws SQLException
+     */
+
+    public CourseGrade(ResultSet rs) throws SQLException {
+        this.courseId = rs.getInt("course_id");
+        this.courseNo = rs.getString("course_no");
+        this.title = rs.getString("title");
+        this.grade = rs.getDouble("grade");
+
+        if (rs.wasNull()) {
+            this.grade = null;      // nothing graded in this course yet
+        }
+    }
+
+    /**
+     * @return courseId
+     */
+
+    public int getCourseId() {
+        return courseId;
+    }
+
+    /**
+     * @return courseNo
+     */
+
+    public String getCourseNo() {
+        return courseNo;
+    }
+
+    /**
+     * @return title
+     */
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return the course grade, or null if ungraded
+     */
+
+    public Double getGrade() {
+        return grade;
+    }
+
+    /**
+     * Retrieves the course grade formatted for display.
+     *
+     * @return the course grade, or -- if ungraded
+     */
+
+    public String getFormattedGrade() {
+        return grade == null ? "--" : String.valueOf(grade);
+    }
+}
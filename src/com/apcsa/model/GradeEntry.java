@@ -0,0 +1,35 @@
+package com.apcsa.model;
+
+public class GradeEntry {
+
+    private int studentId;
+    private double pointsEarned;
+
+    /**
+     * Creates an instance of the GradeEntry class.
+     *
+     * @param studentId the student
+     * @param pointsEarned the points earned on the assignment
+     */
+
+    public GradeEntry(int studentId, double pointsEarned) {
+        this.studentId = studentId;
+        this.pointsEarned = pointsEarned;
+    }
+
+    /**
+     * @return studentId
+     */
+
+    public int getStudentId() {
+        return studentId;
+    }
+
+    /**
+     * @return pointsEarned
+     */
+
+    public double getPointsEarned() {
+        return pointsEarned;
+    }
+}
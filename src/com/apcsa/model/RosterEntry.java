@@ -0,0 +1,66 @@
+package com.apcsa.model;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class RosterEntry {
+
+    private int studentId;
+    private String firstName;
+    private String lastName;
+    private double gpa;
+    private int pointsEarned;
+
+    /**
+     * Creates an instance of the RosterEntry class.
+     *
+     * @param rs a ResultSet row of the course roster query
+     * @throws SQLException
+     */
+
+    public RosterEntry(ResultSet rs) throws SQLException {
+        this.studentId = rs.getInt("student_id");
+        this.firstName = rs.getString("first_name");
+        this.lastName = rs.getString("last_name");
+        this.gpa = rs.getDouble("gpa");
+        this.pointsEarned = rs.getInt("points_earned");
+
+        if (rs.wasNull()) {
+            this.pointsEarned = -1;     // no grade entered for this assignment yet
+        }
+    }
+
+    /**
+     * @return studentId
+     */
+
+    public int getStudentId() {
+        return studentId;
+    }
+
+    /**
+     * @return gpa
+     */
+
+    public double getGpa() {
+        return gpa;
+    }
+
+    /**
+     * @return the points earned on the selected assignment, or -1 if ungraded
+     */
+
+    public int getPointsEarned() {
+        return pointsEarned;
+    }
+
+    /**
+     * Retrieves the student's name formatted as LAST, FIRST.
+     *
+     * @return the formatted name
+     */
+
+    public String getName() {
+        return lastName + ", " + firstName;
+    }
+}
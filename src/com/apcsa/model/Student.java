@@ -71,7 +71,7 @@ public class Student extends User {
 		return firstName;
 	}
 	
-	public double getStudentId() {
+	public int getStudentId() {
         return studentId;
     }
 	
@@ -0,0 +1,105 @@
+package com.apcsa.util;
+
+import java.util.Arrays;
+
+public class DoubleList {
+
+    private double[] elements;
+    private int size;
+
+    /**
+     * Creates an empty DoubleList.
+     */
+
+    public DoubleList() {
+        this(10);
+    }
+
+    /**
+     * Creates an empty DoubleList with room for a number of elements.
+     *
+     * @param capacity the initial capacity
+     */
+
+    public DoubleList(int capacity) {
+        this.elements = new double[Math.max(1, capacity)];
+    }
+
+    /**
+     * Appends an element.
+     *
+     * @param value the element
+     */
+
+    public void add(double value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * @param index the position of the element
+     * @return the element at the position
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return elements[index];
+    }
+
+    /**
+     * @param index the position of the element
+     * @param value the new element
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+
+    public void set(int index, double value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        elements[index] = value;
+    }
+
+    /**
+     * @return the number of elements
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the list has no elements; false otherwise
+     */
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every element, keeping the allocated capacity.
+     */
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return a copy of the elements
+     */
+
+    public double[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
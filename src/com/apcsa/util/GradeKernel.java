@@ -0,0 +1,139 @@
+package com.apcsa.util;
+
+public class GradeKernel {
+
+    // score slots, in the column order of the course_grades table
+
+    public static final int MP1 = 0;
+    public static final int MP2 = 1;
+    public static final int MIDTERM = 2;
+    public static final int MP3 = 3;
+    public static final int MP4 = 4;
+    public static final int FINAL = 5;
+
+    public static final int SLOTS = 6;
+
+    // presence masks: bit n is set when slot n has been graded
+
+    public static final int MARKING_PERIODS = (1 << MP1) | (1 << MP2) | (1 << MP3) | (1 << MP4);
+    public static final int EXAMS = (1 << MIDTERM) | (1 << FINAL);
+    public static final int ALL = MARKING_PERIODS | EXAMS;
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9 };
+
+    private GradeKernel() {
+    }
+
+    /**
+     * Computes a course grade. Marking periods are worth 80% and exams 20% when both have
+     * been graded; otherwise whichever has been graded is worth 100%. The result is rounded
+     * half-up to two decimal places.
+     *
+     * @param scores the scores, SLOTS per student
+     * @param offset the index of the student's MP1 score
+     * @param mask the student's presence mask
+     * @return the course grade, or -1 if nothing has been graded
+     */
+
+    public static double grade(double[] scores, int offset, int mask) {
+        int mps = 0;
+        double mpSum = 0;
+        double mpAvg = -1;
+        double mpWeight = -1;
+
+        int exams = 0;
+        double examSum = 0;
+        double examAvg = -1;
+        double examWeight = -1;
+
+        // sums are accumulated in slot order so results match the original computation exactly
+
+        for (int i = 0; i < SLOTS; i++) {
+            if ((mask & (1 << i)) != 0) {
+                if ((MARKING_PERIODS & (1 << i)) != 0) {
+                    mps++;
+                    mpSum = mpSum + scores[offset + i];
+                } else {
+                    exams++;
+                    examSum = examSum + scores[offset + i];
+                }
+            }
+        }
+
+        if (mps > 0 && exams > 0) {
+            mpAvg = mpSum / mps;
+            examAvg = examSum / exams;
+
+            mpWeight = 0.8;
+            examWeight = 0.2;
+        } else if (mps > 0) {
+            mpAvg = mpSum / mps;
+
+            mpWeight = 1.0;
+            examWeight = 0.0;
+        } else if (exams > 0) {
+            examAvg = examSum / exams;
+
+            mpWeight = 0.0;
+            examWeight = 1.0;
+        } else {
+            return -1;
+        }
+        return round(mpAvg * mpWeight + examAvg * examWeight, 2);
+    }
+
+    /**
+     * Computes the course grades of several students in one pass.
+     *
+     * @param scores the scores, SLOTS per student
+     * @param masks the presence mask of each student
+     * @param grades receives each student's course grade, or -1 if nothing has been graded
+     * @param count the number of students
+     */
+
+    public static void grades(double[] scores, int[] masks, double[] grades, int count) {
+        for (int i = 0; i < count; i++) {
+            grades[i] = grade(scores, i * SLOTS, masks[i]);
+        }
+    }
+
+    /**
+     * Rounds a number half-up (away from zero) to a set number of decimal places. The result
+     * is identical to rounding the value's shortest decimal representation, as in
+     * new BigDecimal(Double.toString(value)).setScale(places, RoundingMode.HALF_UP), but
+     * nothing is allocated.
+     *
+     * @param value the value to round; its magnitude times 10^(places + 1) must be below 2^53
+     * @param places the number of decimal places, 0 through 8
+     * @return the rounded value
+     */
+
+    public static double round(double value, int places) {
+        if (value < 0) {
+            double rounded = round(-value, places);
+
+            return rounded == 0 ? 0.0 : -rounded;   // BigDecimal has no negative zero
+        } else if (!(value < Double.POSITIVE_INFINITY)) {
+            return value;   // NaN or infinite
+        }
+
+        double scale = POWERS_OF_TEN[places];
+        double halfScale = POWERS_OF_TEN[places + 1];
+
+        // A decimal whose digits end in 5 at place places+1 is exactly half-way. Dividing two
+        // exactly representable integers is correctly rounded, so (10n + 5) / 10^(places+1)
+        // is the double nearest that decimal, and value prints at or above the half-way
+        // decimal exactly when value is at or above that double. The estimate of n from
+        // value * scale is off by at most one unit either way.
+
+        long n = (long) Math.floor(value * scale);
+
+        while (value >= (10 * n + 5) / halfScale) {
+            n++;
+        }
+        while (n > 0 && value < (10 * n - 5) / halfScale) {
+            n--;
+        }
+        return n / scale;
+    }
+}
@@ -0,0 +1,128 @@
+package com.apcsa.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+    // Values below 2^SUB_BITS are counted exactly. Above that, each power of two is split
+    // into 2^(SUB_BITS - 1) equal buckets, so every bucket is within ~3% of its values.
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF_COUNT = SUB_COUNT >> 1;
+    private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS + 1) * HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Safe to call from any number of threads without locking.
+     *
+     * @param value the value; negative values are recorded as 0
+     */
+
+    public void record(long value) {
+        value = Math.max(0, value);
+
+        counts.incrementAndGet(getIndex(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry until the maximum is at least value
+        }
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of the recorded values
+     */
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return the largest recorded value, or 0 if nothing was recorded
+     */
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estimates a percentile. The result is the largest value that falls in the same bucket
+     * as the exact percentile, capped at the recorded maximum.
+     *
+     * @param percentile the percentile, 0 through 100
+     * @return the estimated value, or 0 if nothing was recorded
+     */
+
+    public long getPercentile(double percentile) {
+        long recorded = count.get();
+
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(recorded * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Discards every recorded value.
+     */
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    private static int getIndex(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+
+        return SUB_COUNT + (shift - 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    private static long getHighestValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+
+        int shift = (index - SUB_COUNT) / HALF_COUNT + 1;
+        long sub = (index - SUB_COUNT) % HALF_COUNT + HALF_COUNT;
+
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,201 @@
+package com.apcsa.util;
+
+import java.util.Arrays;
+
+public class LongDoubleMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int size;
+
+    /**
+     * Creates an empty LongDoubleMap.
+     */
+
+    public LongDoubleMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty LongDoubleMap with room for a number of entries.
+     *
+     * @param expected the number of entries expected
+     */
+
+    public LongDoubleMap(int expected) {
+        allocate(tableSize(expected));
+    }
+
+    /**
+     * Retrieves the value mapped to a key.
+     *
+     * @param key the key
+     * @param missing the value returned if the key is not mapped
+     * @return the mapped value, or missing
+     */
+
+    public double get(long key, double missing) {
+        int slot = find(key);
+
+        return slot < 0 ? missing : values[slot];
+    }
+
+    /**
+     * @param key the key
+     * @return true if the key is mapped; false otherwise
+     */
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous value.
+     *
+     * @param key the key
+     * @param value the value
+     */
+
+    public void put(long key, double value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Removes the mapping of a key.
+     *
+     * @param key the key
+     * @return true if the key was mapped; false otherwise
+     */
+
+    public boolean remove(long key) {
+        int slot = find(key);
+
+        if (slot < 0) {
+            return false;
+        }
+
+        // shift later entries of the probe sequence back so lookups never hit a hole
+
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        used[hole] = false;
+        size--;
+
+        return true;
+    }
+
+    /**
+     * @return the number of mappings
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the map is empty; false otherwise
+     */
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every mapping, keeping the allocated capacity.
+     */
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /////// PRIVATE METHODS ///////////////////////////////////////////////////////////////
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(capacity);
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+    }
+
+    /*
+     * Spreads packed and sequential keys across the table (Fibonacci hashing).
+     */
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSize(int expected) {
+        int capacity = 16;
+
+        while (capacity * LOAD_FACTOR < expected) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+}
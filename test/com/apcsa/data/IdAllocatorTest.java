@@ -0,0 +1,173 @@
+package com.apcsa.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IdAllocatorTest {
+
+    private static final String SEQUENCE = "assignments";
+
+    @TempDir
+    Path directory;
+
+    private String url;
+    private final List<ConnectionPool> pools = new ArrayList<ConnectionPool>();
+
+    @BeforeEach
+    void createSequence() throws SQLException {
+        url = "jdbc:sqlite:" + directory.resolve("ids.db");
+
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement()) {
+
+            stmt.executeUpdate(QueryUtils.CREATE_SEQUENCES_SQL);
+            stmt.executeUpdate("INSERT INTO sequences (name, next_value) VALUES ('" + SEQUENCE + "', 1)");
+        }
+    }
+
+    @AfterEach
+    void closePools() {
+        for (ConnectionPool pool : pools) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void idsIncreaseAcrossBlockBoundaries() throws SQLException {
+        IdAllocator allocator = new IdAllocator(SEQUENCE, 3);
+        ConnectionPool pool = newPool();
+
+        for (int expected = 1; expected <= 10; expected++) {
+            assertEquals(expected, allocator.next(pool::borrow));
+        }
+
+        assertEquals(13, nextValue());      // four blocks of three reserved
+    }
+
+    @Test
+    void clearedBlocksAreNeverReused() throws SQLException {
+        IdAllocator allocator = new IdAllocator(SEQUENCE, 5);
+        ConnectionPool pool = newPool();
+
+        assertEquals(1, allocator.next(pool::borrow));
+        allocator.clear();
+        assertEquals(6, allocator.next(pool::borrow));
+    }
+
+    @Test
+    void threadsSharingAnAllocatorGetUniqueIds() throws Exception {
+        IdAllocator allocator = new IdAllocator(SEQUENCE, 7);
+        ConnectionPool pool = newPool();
+        List<Callable<List<Integer>>> tasks = new ArrayList<Callable<List<Integer>>>();
+
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> allocate(allocator, pool, 500));
+        }
+
+        assertUnique(run(tasks), 8 * 500);
+    }
+
+    @Test
+    void allocatorsSharingADatabaseGetUniqueIds() throws Exception {
+        List<Callable<List<Integer>>> tasks = new ArrayList<Callable<List<Integer>>>();
+
+        // two pools and allocators on one file stand in for two application processes
+
+        for (int i = 0; i < 2; i++) {
+            IdAllocator allocator = new IdAllocator(SEQUENCE, 4);
+            ConnectionPool pool = newPool();
+
+            for (int j = 0; j < 4; j++) {
+                tasks.add(() -> allocate(allocator, pool, 300));
+            }
+        }
+
+        assertUnique(run(tasks), 8 * 300);
+    }
+
+    @Test
+    void unknownSequencesFail() {
+        IdAllocator allocator = new IdAllocator("missing", 5);
+        ConnectionPool pool = newPool();
+
+        assertThrows(SQLException.class, () -> allocator.next(pool::borrow));
+    }
+
+    /////// HELPERS ///////////////////////////////////////////////////////////////////////
+
+    private ConnectionPool newPool() {
+        ConnectionPool pool = new ConnectionPool(url, 1, 4, 60000, 5000, 2, 10, PragmaProfile.FAST::apply);
+
+        pools.add(pool);
+
+        return pool;
+    }
+
+    /*
+     * Allocates ids on one thread, checking that each is larger than the one before.
+     */
+
+    private static List<Integer> allocate(IdAllocator allocator, ConnectionPool pool, int count) throws SQLException {
+        List<Integer> ids = new ArrayList<Integer>();
+
+        for (int i = 0; i < count; i++) {
+            int id = allocator.next(pool::borrow);
+
+            assertTrue(ids.isEmpty() || id > ids.get(ids.size() - 1), "ids must increase on a thread");
+            ids.add(id);
+        }
+
+        return ids;
+    }
+
+    private static List<Integer> run(List<Callable<List<Integer>>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        List<Integer> ids = new ArrayList<Integer>();
+
+        try {
+            for (Future<List<Integer>> result : executor.invokeAll(tasks)) {
+                ids.addAll(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return ids;
+    }
+
+    private static void assertUnique(List<Integer> ids, int expected) {
+        Set<Integer> unique = new HashSet<Integer>(ids);
+
+        assertEquals(expected, ids.size());
+        assertEquals(expected, unique.size(), "duplicate ids were handed out");
+    }
+
+    private long nextValue() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT next_value FROM sequences WHERE name = '" + SEQUENCE + "'")) {
+
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.apcsa.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SqlScriptLoaderTest {
+
+    private Connection conn;
+
+    @BeforeEach
+    void open() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER PRIMARY KEY, value TEXT)");
+        }
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void splitsStatementsAndSkipsEmptyOnes() throws Exception {
+        int executed = load(100, "INSERT INTO t VALUES (1, 'a');;\n ; INSERT INTO t VALUES (2, 'b');\nINSERT INTO t VALUES (3, 'c')");
+
+        assertEquals(3, executed);
+        assertEquals(Arrays.asList("a", "b", "c"), values());
+    }
+
+    @Test
+    void keepsSemicolonsAndEscapedQuotesInsideLiterals() throws Exception {
+        load(100, "INSERT INTO t VALUES (1, 'x; y');" +
+            "INSERT INTO t VALUES (2, 'it''s; fine');" +
+            "INSERT INTO t VALUES (3, 'a--b /* c */ d');");
+
+        assertEquals(Arrays.asList("x; y", "it's; fine", "a--b /* c */ d"), values());
+    }
+
+    @Test
+    void keepsSemicolonsInsideQuotedIdentifiers() throws Exception {
+        load(100, "CREATE TABLE \"odd;name\" (\"a;b\" TEXT, [c;d] TEXT, `e;f` TEXT);" +
+            "INSERT INTO \"odd;name\" VALUES ('1', '2', '3');" +
+            "INSERT INTO t SELECT 1, \"a;b\" || [c;d] || `e;f` FROM \"odd;name\";");
+
+        assertEquals(Arrays.asList("123"), values());
+    }
+
+    @Test
+    void skipsLineComments() throws Exception {
+        int executed = load(100, "-- header; with 'a quote\n" +
+            "INSERT INTO t VALUES (1, 'a'); -- trailing; comment\n" +
+            "INSERT INTO t -- inside; a statement\n VALUES (2, 'b');\n" +
+            "-- last line without a break; INSERT INTO t VALUES (3, 'c');");
+
+        assertEquals(2, executed);
+        assertEquals(Arrays.asList("a", "b"), values());
+    }
+
+    @Test
+    void skipsBlockComments() throws Exception {
+        int executed = load(100, "/* header; with 'a quote */ INSERT INTO t VALUES (1, 'a');" +
+            "INSERT INTO t /* inside;\n a statement */ VALUES (2, 'b');" +
+            "/* a comment; */;" +
+            "INSERT INTO t VALUES (3, 'c') /* unterminated; comment");
+
+        assertEquals(3, executed);
+        assertEquals(Arrays.asList("a", "b", "c"), values());
+    }
+
+    @Test
+    void keepsMinusAndSlashOperators() throws Exception {
+        load(100, "INSERT INTO t VALUES (8 - 1, 8 / 2 - -1);");
+
+        assertEquals(Arrays.asList("5"), values());
+        assertEquals(7, scalar("SELECT id FROM t"));
+    }
+
+    @Test
+    void readsLiteralsThatSpanTheReadBuffer() throws Exception {
+        char[] filler = new char[20000];
+        Arrays.fill(filler, ';');
+        String literal = new String(filler);
+
+        load(100, "INSERT INTO t VALUES (1, '" + literal + "'); INSERT INTO t VALUES (2, 'b');");
+
+        assertEquals(Arrays.asList(literal, "b"), values());
+    }
+
+    @Test
+    void executesStatementsAcrossBatchBoundaries() throws Exception {
+        StringBuilder script = new StringBuilder();
+
+        for (int i = 1; i <= 7; i++) {
+            script.append("INSERT INTO t VALUES (").append(i).append(", 'v").append(i).append("');\n");
+        }
+
+        assertEquals(7, load(3, script.toString()));
+        assertEquals(7, scalar("SELECT COUNT(*) FROM t"));
+        assertTrue(conn.getAutoCommit());
+    }
+
+    @Test
+    void rollsBackEveryBatchWhenAStatementFails() throws Exception {
+        String script = "CREATE TABLE u (id INTEGER);" +
+            "INSERT INTO t VALUES (1, 'a');" +
+            "INSERT INTO t VALUES (2, 'b');" +
+            "INSERT INTO t VALUES (3, 'c');" +
+            "INSERT INTO t VALUES (1, 'duplicate');" +         // fails after two batches were sent
+            "INSERT INTO t VALUES (4, 'd');";
+
+        assertThrows(SQLException.class, () -> load(2, script));
+
+        assertEquals(0, scalar("SELECT COUNT(*) FROM t"));
+        assertEquals(0, scalar("SELECT COUNT(*) FROM sqlite_master WHERE name = 'u'"));
+        assertTrue(conn.getAutoCommit());
+    }
+
+    @Test
+    void rollsBackWhenTheScriptCannotBeParsedByTheDatabase() throws Exception {
+        assertThrows(SQLException.class, () -> load(100, "INSERT INTO t VALUES (1, 'a'); INSERT INTO t VALUES (2, 'b"));
+
+        assertEquals(0, scalar("SELECT COUNT(*) FROM t"));
+    }
+
+    /////// HELPERS ///////////////////////////////////////////////////////////////////////
+
+    private int load(int batchSize, String script) throws Exception {
+        return new SqlScriptLoader(batchSize).load(conn, new StringReader(script));
+    }
+
+    private List<String> values() throws SQLException {
+        List<String> values = new ArrayList<String>();
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT value FROM t ORDER BY id")) {
+
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+
+        return values;
+    }
+
+    private long scalar(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.apcsa.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GradeKernelTest {
+
+    private static final long SEED = 20190417L;
+
+    @Test
+    void matchesTheOriginalForEveryPresenceMask() {
+        double[] scores = { 91.25, 87.5, 78.0, 99.99, 64.13, 82.75 };
+
+        for (int mask = 0; mask <= GradeKernel.ALL; mask++) {
+            assertGrade(scores, mask);
+        }
+    }
+
+    @Test
+    void matchesTheOriginalOnStoredAverages() {
+        Random random = new Random(SEED);
+        double[] scores = new double[GradeKernel.SLOTS];
+
+        // averages are stored rounded to two places, so these are the inputs seen in practice
+
+        for (int n = 0; n < 200000; n++) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = random.nextInt(10001) / 100.0;
+            }
+            assertGrade(scores, random.nextInt(GradeKernel.ALL + 1));
+        }
+    }
+
+    @Test
+    void matchesTheOriginalOnUnroundedScores() {
+        Random random = new Random(SEED);
+        double[] scores = new double[GradeKernel.SLOTS];
+
+        for (int n = 0; n < 200000; n++) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = random.nextDouble() * 120;
+            }
+            assertGrade(scores, random.nextInt(GradeKernel.ALL + 1));
+        }
+    }
+
+    @Test
+    void matchesTheOriginalOnHalfwayAverages() {
+        double[] scores = new double[GradeKernel.SLOTS];
+
+        // two marking periods a hundredth apart average to a value ending in 5 at the third place
+
+        for (int cents = 0; cents < 10000; cents++) {
+            scores[GradeKernel.MP1] = cents / 100.0;
+            scores[GradeKernel.MP2] = (cents + 1) / 100.0;
+
+            assertGrade(scores, (1 << GradeKernel.MP1) | (1 << GradeKernel.MP2));
+        }
+    }
+
+    @Test
+    void roundsHalfUpLikeBigDecimal() {
+        Random random = new Random(SEED);
+
+        for (int thousandths = 0; thousandths <= 200000; thousandths++) {
+            double value = thousandths / 1000.0;
+
+            assertEquals(reference(value, 2), GradeKernel.round(value, 2), Double.toString(value));
+            assertEquals(reference(-value, 2), GradeKernel.round(-value, 2), Double.toString(-value));
+        }
+        for (int n = 0; n < 200000; n++) {
+            double value = random.nextDouble() * 1000;
+            int places = random.nextInt(5);
+
+            assertEquals(reference(value, places), GradeKernel.round(value, places), Double.toString(value));
+        }
+    }
+
+    @Test
+    void gradesMatchesGradeForEachStudent() {
+        Random random = new Random(SEED);
+        int count = 500;
+        double[] scores = new double[count * GradeKernel.SLOTS];
+        int[] masks = new int[count];
+        double[] grades = new double[count];
+
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextInt(10001) / 100.0;
+        }
+        for (int i = 0; i < count; i++) {
+            masks[i] = random.nextInt(GradeKernel.ALL + 1);
+        }
+
+        GradeKernel.grades(scores, masks, grades, count);
+
+        for (int i = 0; i < count; i++) {
+            double[] student = new double[GradeKernel.SLOTS];
+
+            System.arraycopy(scores, i * GradeKernel.SLOTS, student, 0, GradeKernel.SLOTS);
+
+            assertEquals(reference(list(student, masks[i])), grades[i], "student " + i);
+        }
+    }
+
+    /////// HELPERS ///////////////////////////////////////////////////////////////////////
+
+    /*
+     * Checks the kernel against the original computation for one set of scores.
+     */
+
+    private static void assertGrade(double[] scores, int mask) {
+        DoubleList grades = list(scores, mask);
+
+        assertEquals(reference(grades), GradeKernel.grade(scores, 0, mask), grades + " mask " + mask);
+    }
+
+    /*
+     * Lists the scores as the original computation expects them, with -1 for missing slots.
+     */
+
+    private static DoubleList list(double[] scores, int mask) {
+        DoubleList grades = new DoubleList(GradeKernel.SLOTS);
+
+        for (int i = 0; i < GradeKernel.SLOTS; i++) {
+            grades.add((mask & (1 << i)) != 0 ? scores[i] : -1);
+        }
+        return grades;
+    }
+
+    /*
+     * The course grade computation the kernel replaced, adapted from Utils.getGrade: it
+     * takes a DoubleList instead of a list of boxed grades, so the null checks are gone,
+     * but the arithmetic and rounding are unchanged.
+     */
+
+    private static double reference(DoubleList grades) {
+        int mps = 0;
+        double mpSum = 0;
+        double mpAvg = -1;
+        double mpWeight = -1;
+
+        int exams = 0;
+        double examSum = 0;
+        double examAvg = -1;
+        double examWeight = -1;
+
+        // compute sume of marking period and/or exam grades
+
+        for (int i = 0; i < grades.size(); i++) {
+            double grade = grades.get(i);
+
+            if (grade != -1) {
+                if (i < 2 || (i > 2 && i < 5)) {        // marking period grade
+                    mps++;
+                    mpSum = mpSum + grade;
+                } else {                                // midterm or final exam grade
+                    exams++;
+                    examSum = examSum + grade;
+                }
+            }
+        }
+
+        // compute weights and averages based on entered grades
+
+        if (mps > 0 && exams > 0) {
+            mpAvg = mpSum / mps;
+            examAvg = examSum / exams;
+
+            mpWeight = 0.8;
+            examWeight = 0.2;
+        } else if (mps > 0) {
+            mpAvg = mpSum / mps;
+
+            mpWeight = 1.0;
+            examWeight = 0.0;
+        } else if (exams > 0) {
+            examAvg = examSum / exams;
+
+            mpWeight = 0.0;
+            examWeight = 1.0;
+        } else {
+            return -1;
+        }
+        return reference(mpAvg * mpWeight + examAvg * examWeight, 2);
+    }
+
+    private static double reference(double value, int places) {
+        return new BigDecimal(Double.toString(value))
+            .setScale(places, RoundingMode.HALF_UP)
+            .doubleValue();
+    }
+}